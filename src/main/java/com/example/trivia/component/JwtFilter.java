@@ -1,6 +1,13 @@
 package com.example.trivia.component;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -9,21 +16,50 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.example.trivia.dto.PlayerMembership;
+import com.example.trivia.service.PlayerTokenService;
+
 @Component
 @Order(1)
 public class JwtFilter extends OncePerRequestFilter {
-    private final JwtKeyLocator jwtKeyLocator;
 
-    public JwtFilter(JwtKeyLocator jwtKeyLocator) {
-        this.jwtKeyLocator = jwtKeyLocator;
+    /**
+     * A token whose signature was verified, with its claims and the time it
+     * expires at in milliseconds since the epoch.
+     */
+    private record VerifiedToken(byte[] token, Claims claims, long expiresAt) {
+    }
+
+    private final JwtParser parser;
+    private final PlayerTokenService playerTokenService;
+    private final int cacheSize;
+    // Keyed by the signature segment of the token, which is unique per token in practice. The whole token is
+    // still compared on a hit, so a forged token that reuses a cached signature is verified as usual.
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+    // The signatures of the cached tokens in the order they were cached, which is the order they expire in since
+    // every token is issued with the same lifetime
+    private final Queue<String> cacheOrder = new ConcurrentLinkedQueue<>();
+
+    public JwtFilter(
+            JwtKeyLocator jwtKeyLocator,
+            PlayerTokenService playerTokenService,
+            @Value("${jwt.cache-size}") int cacheSize) {
+        this.parser = Jwts.parser()
+                .keyLocator(jwtKeyLocator)
+                .build();
+        this.playerTokenService = playerTokenService;
+        this.cacheSize = cacheSize;
     }
 
     @Override
@@ -42,14 +78,11 @@ public class JwtFilter extends OncePerRequestFilter {
 
         if (jwt != null) {
             try {
-                Claims claims = Jwts.parser()
-                        .keyLocator(this.jwtKeyLocator)
-                        .build()
-                        .parseSignedClaims(jwt)
-                        .getPayload();
+                Claims claims = verify(jwt);
 
                 Long playerId = Long.parseLong(claims.getSubject());
                 request.setAttribute("playerId", playerId);
+                setMembership(request, claims);
             } catch (JwtException e) {
                 response.setStatus(HttpStatus.UNAUTHORIZED.value());
                 response.getWriter().write("Unauthorized: " + e.getMessage());
@@ -59,4 +92,63 @@ public class JwtFilter extends OncePerRequestFilter {
 
         chain.doFilter(request, response);
     }
+
+    /**
+     * Exposes the room and team carried by a token as the "membership"
+     * attribute, if the token is current. Controllers load the membership
+     * themselves when the attribute is missing, so this is skipped when the
+     * version can't be checked.
+     */
+    private void setMembership(HttpServletRequest request, Claims claims) {
+        try {
+            PlayerMembership membership = playerTokenService.getMembership(claims);
+            if (membership != null) {
+                request.setAttribute("membership", membership);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Could not check the membership version of a token", e);
+        }
+    }
+
+    /**
+     * Returns the claims of a token, verifying its signature and parsing it
+     * only the first time it is seen until it expires.
+     *
+     * @param jwt the compact token
+     * @return the claims of the token
+     * @throws JwtException if the token is invalid or expired
+     */
+    private Claims verify(String jwt) {
+        String signature = jwt.substring(jwt.lastIndexOf('.') + 1);
+        byte[] token = jwt.getBytes(StandardCharsets.UTF_8);
+        long now = System.currentTimeMillis();
+
+        VerifiedToken cached = verifiedTokens.get(signature);
+        if (cached != null && now < cached.expiresAt() && MessageDigest.isEqual(cached.token(), token)) {
+            return cached.claims();
+        }
+
+        Claims claims = parser.parseSignedClaims(jwt).getPayload();
+
+        // Tokens without an expiration are never cached, since they could not be evicted
+        Date expiration = claims.getExpiration();
+        if (expiration != null && !signature.isEmpty()
+                && verifiedTokens.put(signature, new VerifiedToken(token, claims, expiration.getTime())) == null) {
+            cacheOrder.add(signature);
+            // Evict the oldest tokens first, so caching a token costs the same however full the cache is
+            while (verifiedTokens.size() > cacheSize) {
+                String eldest = cacheOrder.poll();
+                if (eldest == null) {
+                    break;
+                }
+                verifiedTokens.remove(eldest);
+            }
+        }
+
+        return claims;
+    }
+
+    int getCachedTokenCount() {
+        return verifiedTokens.size();
+    }
 }
@@ -1,11 +1,13 @@
 package com.example.trivia.controller;
 
 import java.time.Instant;
-import java.util.List;
+import java.util.Optional;
 
 import jakarta.servlet.http.HttpServletRequest;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -15,39 +17,52 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
 import com.example.trivia.dto.AnswerSubmissionRequest;
+import com.example.trivia.dto.PlayerMembership;
 import com.example.trivia.model.Answer;
 import com.example.trivia.model.Game;
 import com.example.trivia.model.Player;
 import com.example.trivia.model.QuestionRef;
 import com.example.trivia.model.Round;
 import com.example.trivia.repository.AnswerRepository;
-import com.example.trivia.repository.GameRepository;
 import com.example.trivia.repository.PlayerRepository;
-import com.example.trivia.repository.QuestionRepository;
 import com.example.trivia.repository.RoundRepository;
+import com.example.trivia.service.ActiveRoundCache;
+import com.example.trivia.service.AnswerWriter;
+import com.example.trivia.service.RoundResultsCache;
+import com.example.trivia.service.ScoringService;
 import com.example.trivia.service.SseService;
 
 @RestController
 public class AnswerController {
+    // Answers are written within a flush interval, so a pending answer, or the results of a round that waited for
+    // it, are there by the time the client asks again
+    private static final String PENDING_RETRY_AFTER_SECONDS = "1";
+
+    private final ActiveRoundCache activeRoundCache;
     private final AnswerRepository answerRepo;
-    private final GameRepository gameRepo;
+    private final AnswerWriter answerWriter;
     private final PlayerRepository playerRepo;
-    private final QuestionRepository questionRepo;
     private final RoundRepository roundRepo;
+    private final RoundResultsCache roundResultsCache;
+    private final ScoringService scoringService;
     private final SseService sseService;
 
     public AnswerController(
+            ActiveRoundCache activeRoundCache,
             AnswerRepository answerRepo,
-            GameRepository gameRepo,
+            AnswerWriter answerWriter,
             PlayerRepository playerRepo,
-            QuestionRepository questionRepo,
             RoundRepository roundRepo,
+            RoundResultsCache roundResultsCache,
+            ScoringService scoringService,
             SseService sseService) {
+        this.activeRoundCache = activeRoundCache;
         this.answerRepo = answerRepo;
-        this.gameRepo = gameRepo;
+        this.answerWriter = answerWriter;
         this.playerRepo = playerRepo;
-        this.questionRepo = questionRepo;
         this.roundRepo = roundRepo;
+        this.roundResultsCache = roundResultsCache;
+        this.scoringService = scoringService;
         this.sseService = sseService;
     }
 
@@ -57,8 +72,11 @@ public class AnswerController {
             @RequestParam Long questionId,
             @RequestBody AnswerSubmissionRequest body,
             HttpServletRequest request) {
-        Round round = roundRepo.findById(roundId)
+        // Validated against the cached round, game and room players, so only the answer write hits the database
+        ActiveRoundCache.ActiveRound activeRound = activeRoundCache.get(roundId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Round not found"));
+        Round round = activeRound.round();
+        Game game = activeRound.game();
 
         if (!round.getQuestions().contains(new QuestionRef(questionId))) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Question not found");
@@ -69,13 +87,8 @@ public class AnswerController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
         }
 
-        Player currentPlayer = playerRepo.findById(currentPlayerId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.FORBIDDEN, "Player is not in the room"));
-
-        Game game = gameRepo.findById(round.getGameId())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Game not found"));
-
-        if (!currentPlayer.getRoomId().equals(game.getRoomId())) {
+        Player currentPlayer = activeRound.players().get(currentPlayerId);
+        if (currentPlayer == null) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Player is not in the room");
         }
 
@@ -87,35 +100,52 @@ public class AnswerController {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Player not in a team");
         }
 
-        Answer answer = answerRepo.findByRoundIdAndQuestionIdAndPlayerId(roundId, questionId, currentPlayerId)
-                .orElse(new Answer());
+        // Accepted once validated; the answer is written with the next batch
+        Answer answer = new Answer();
         answer.setRoundId(roundId);
         answer.setQuestionId(questionId);
         answer.setPlayerId(currentPlayer.getId());
         answer.setTeamId(currentPlayer.getTeamId());
         answer.setAnswer(body.answer());
         answer.setCreatedAt(Instant.now());
-        answer = answerRepo.save(answer);
+        // Graded before it is queued, so an answer that is dropped is never graded after its grade was taken back
+        scoringService.grade(answer, round, game);
+        answerWriter.submit(answer, stored -> scoringService.reconcile(answer, stored.orElse(null), round, game));
         sseService.publish(game.getRoomId().toString(), "player-submitted-answer", currentPlayerId);
-        return ResponseEntity.ok(answer);
+        return ResponseEntity.accepted().body(answer);
     }
 
-    @GetMapping(value = "/answers", params = {"roundId", "questionId", "!playerId"})
-    public ResponseEntity<List<Answer>> getAnswers(
+    @GetMapping(value = "/answers", params = {"roundId", "questionId", "!playerId"},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getAnswers(
             @RequestParam Long roundId,
             @RequestParam Long questionId) {
-        Round round = roundRepo.findById(roundId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Round not found"));
+        // Served from the results of the round, which are computed once for every player asking when it ends
+        Optional<RoundResultsCache.Results> results = roundResultsCache.getIfPresent(roundId).or(() -> {
+            Round round = activeRoundCache.getRound(roundId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Round not found"));
 
-        questionRepo.findById(questionId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Question not found"));
+            if (Instant.now().isBefore(round.getEndedAt())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Round has not ended yet");
+            }
+            return roundResultsCache.get(round);
+        });
+
+        // Answers of the round may still be queued on some node, which writes them within a flush interval
+        if (results.isEmpty()) {
+            return ResponseEntity.accepted()
+                    .header(HttpHeaders.RETRY_AFTER, PENDING_RETRY_AFTER_SECONDS)
+                    .build();
+        }
 
-        if (Instant.now().isBefore(round.getEndedAt())) {
-            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Round has not ended yet");
+        byte[] answers = results.get().answers().get(questionId);
+        if (answers == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Question not found");
         }
 
-        List<Answer> answers = answerRepo.findByRoundIdAndQuestionId(roundId, questionId);
-        return ResponseEntity.ok(answers);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(answers);
     }
 
     @GetMapping(value = "/answers", params = {"roundId", "questionId", "playerId"})
@@ -136,10 +166,12 @@ public class AnswerController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
         }
 
-        Player currentPlayer = playerRepo.findById(currentPlayerId)
+        // A current token carries the team of the player, so the player is only loaded for older tokens
+        PlayerMembership currentPlayer = Optional.ofNullable((PlayerMembership) request.getAttribute("membership"))
+                .or(() -> playerRepo.findById(currentPlayerId).map(PlayerMembership::of))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.FORBIDDEN, "Player not in the game"));
 
-        if (currentPlayer.getTeamId() == null) {
+        if (currentPlayer.teamId() == null) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Player not in a team");
         }
 
@@ -147,15 +179,27 @@ public class AnswerController {
             Player player = playerRepo.findById(playerId)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Player not found"));
 
-            if (!currentPlayer.getTeamId().equals(player.getTeamId())) {
+            if (!currentPlayer.teamId().equals(player.getTeamId())) {
                 throw new ResponseStatusException(HttpStatus.FORBIDDEN,
                         "Cannot view an answer from a player in another team");
             }
         }
 
-        Answer answer = answerRepo.findByRoundIdAndQuestionIdAndPlayerId(roundId, questionId, playerId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Answer not found"));
+        answerWriter.flush();
+        Optional<Answer> answer = answerRepo.findByRoundIdAndQuestionIdAndPlayerId(roundId, questionId, playerId);
+
+        // The answers queued on this node are written, but another node may have accepted a later one that it has
+        // not written yet, which is then graded already
+        Instant gradedAt = scoringService.getGradedAt(roundId, questionId, playerId);
+        if (gradedAt != null && answer.map(Answer::getCreatedAt)
+                .map(createdAt -> createdAt.toEpochMilli() < gradedAt.toEpochMilli())
+                .orElse(true)) {
+            return ResponseEntity.accepted()
+                    .header(HttpHeaders.RETRY_AFTER, PENDING_RETRY_AFTER_SECONDS)
+                    .build();
+        }
 
-        return ResponseEntity.ok(answer);
+        return ResponseEntity.ok(answer
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Answer not found")));
     }
 }
@@ -3,9 +3,7 @@ package com.example.trivia.controller;
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -23,43 +21,56 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.example.trivia.dto.Leaderboard;
 import com.example.trivia.model.Game;
-import com.example.trivia.model.Question;
 import com.example.trivia.model.Room;
-import com.example.trivia.model.Round;
 import com.example.trivia.repository.GameRepository;
-import com.example.trivia.repository.QuestionRepository;
 import com.example.trivia.repository.RoomRepository;
-import com.example.trivia.repository.RoundRepository;
+import com.example.trivia.service.ActiveRoundCache;
+import com.example.trivia.service.GameService;
+import com.example.trivia.service.QuestionCatalog;
+import com.example.trivia.service.ScoringService;
 import com.example.trivia.service.SseService;
+import com.example.trivia.util.Cursor;
 import com.example.trivia.util.LinkHeaderBuilder;
 
 @RestController
 public class GameController {
+    private final ActiveRoundCache activeRoundCache;
     private final GameRepository gameRepo;
-    private final QuestionRepository questionRepo;
+    private final GameService gameService;
+    private final QuestionCatalog questionCatalog;
     private final RoomRepository roomRepo;
-    private final RoundRepository roundRepo;
+    private final ScoringService scoringService;
     private final SseService sseService;
 
     public GameController(
+            ActiveRoundCache activeRoundCache,
             GameRepository gameRepo,
-            QuestionRepository questionRepo,
+            GameService gameService,
+            QuestionCatalog questionCatalog,
             RoomRepository roomRepo,
-            RoundRepository roundRepo,
+            ScoringService scoringService,
             SseService sseService) {
+        this.activeRoundCache = activeRoundCache;
         this.gameRepo = gameRepo;
-        this.questionRepo = questionRepo;
+        this.gameService = gameService;
+        this.questionCatalog = questionCatalog;
         this.roomRepo = roomRepo;
-        this.roundRepo = roundRepo;
+        this.scoringService = scoringService;
         this.sseService = sseService;
     }
 
     @GetMapping("/games")
     public ResponseEntity<List<Game>> getGames(
             @RequestParam(required = false) Long roomId,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
+        if (cursor != null) {
+            return getGamesByCursor(roomId, cursor, size);
+        }
+
         Pageable pageable = PageRequest.of(page, size);
         Page<Game> games = roomId != null
                 ? gameRepo.findByRoomId(roomId, pageable)
@@ -80,6 +91,26 @@ public class GameController {
         return ResponseEntity.ok().header("Link", linkHeader).body(games.toList());
     }
 
+    /**
+     * Returns a page of games from newest to oldest starting after a cursor,
+     * or the first page for an empty cursor, without counting the games.
+     */
+    private ResponseEntity<List<Game>> getGamesByCursor(Long roomId, String cursor, int size) {
+        return Cursor.respondWithPage(cursor, size,
+                UriComponentsBuilder.fromPath("/games").replaceQueryParam("roomId", roomId),
+                (after, limit) -> {
+                    if (after == null) {
+                        return roomId != null
+                                ? gameRepo.findFirstPageByRoomId(roomId, limit)
+                                : gameRepo.findFirstPage(limit);
+                    }
+                    return roomId != null
+                            ? gameRepo.findPageByRoomIdAfter(roomId, after.createdAt(), after.id(), limit)
+                            : gameRepo.findPageAfter(after.createdAt(), after.id(), limit);
+                },
+                game -> new Cursor(game.getCreatedAt(), game.getId()));
+    }
+
     @PostMapping("/games")
     public ResponseEntity<Game> createGame(
             @RequestParam Long roomId,
@@ -95,7 +126,7 @@ public class GameController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
         }
 
-        if (!room.getHostId().equals(currentPlayerId)) {
+        if (!currentPlayerId.equals(room.getHostId())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the host can create a game");
         }
 
@@ -109,41 +140,13 @@ public class GameController {
                     });
         }
 
-        Game game = new Game();
-        game.setRoomId(roomId);
-        game.setCreatedAt(Instant.now());
-        game.setEndedAt(game.getCreatedAt().plus(Duration.ofSeconds(rounds * timePerRound)));
-        game = gameRepo.save(game);
-
-        room.setGameId(game.getId());
-        room = roomRepo.save(room);
-
-        Set<Long> questionIds = new HashSet<>();
-        long questionCount = questionRepo.count();
-        if (questionCount < rounds * questionsPerRound) {
+        if (questionCatalog.size() < rounds * questionsPerRound) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not enough questions");
         }
 
-        for (int roundNumber = 1; roundNumber <= rounds; roundNumber++) {
-            Round round = new Round();
-            round.setGameId(game.getId());
-            round.setCreatedAt(Instant.now().plus(Duration.ofSeconds(timePerRound * (roundNumber - 1))));
-            round.setEndedAt(round.getCreatedAt().plus(Duration.ofSeconds(timePerRound)));
-
-            for (int questionNumber = 1; questionNumber <= questionsPerRound; questionNumber++) {
-                Question question = null;
-                while (question == null || questionIds.contains(question.getId())) {
-                    Pageable pageable = PageRequest.of((int) (Math.random() * questionCount), 1);
-                    question = questionRepo.findAll(pageable).getContent().get(0);
-                }
-
-                questionIds.add(question.getId());
-                round.addQuestion(question);
-            }
-
-            roundRepo.save(round);
-        }
+        Game game = gameService.createGame(room, rounds, Duration.ofSeconds(timePerRound), questionsPerRound);
 
+        activeRoundCache.invalidateRoom(roomId);
         URI location = URI.create("/games/" + game.getId());
         sseService.publish(room.getId().toString(), "game-created", game.getId());
         return ResponseEntity.created(location).body(game);
@@ -157,6 +160,18 @@ public class GameController {
         return ResponseEntity.ok(game);
     }
 
+    @GetMapping("/games/{id}/leaderboard")
+    public ResponseEntity<Leaderboard> getLeaderboard(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and 100");
+        }
+
+        // Read from the sorted sets of the game, without touching the database
+        return ResponseEntity.ok(scoringService.getLeaderboard(id, limit));
+    }
+
     @DeleteMapping("/games/{id}")
     public ResponseEntity<Void> deleteGame(@PathVariable Long id, HttpServletRequest request) {
         Game game = gameRepo.findById(id)
@@ -170,7 +185,7 @@ public class GameController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
         }
 
-        if (!room.getHostId().equals(currentPlayerId)) {
+        if (!currentPlayerId.equals(room.getHostId())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the host can delete the game");
         }
 
@@ -179,6 +194,7 @@ public class GameController {
         }
 
         gameRepo.deleteById(id);
+        activeRoundCache.invalidateGame(id);
         sseService.publish(room.getId().toString(), "game-deleted", game.getId());
         return ResponseEntity.noContent().build();
     }
@@ -1,11 +1,8 @@
 package com.example.trivia.controller;
 
 import java.net.URI;
-import java.util.Date;
 import java.util.List;
 
-import io.jsonwebtoken.Jwts;
-
 import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.http.HttpStatus;
@@ -14,33 +11,57 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
-import com.example.trivia.component.JwtKeyLocator;
+import com.example.trivia.dto.BulkJoinRequest;
+import com.example.trivia.dto.BulkJoinResponse;
 import com.example.trivia.dto.RoomJoinResponse;
 import com.example.trivia.model.Player;
 import com.example.trivia.model.Room;
 import com.example.trivia.repository.PlayerRepository;
 import com.example.trivia.repository.RoomRepository;
+import com.example.trivia.service.ActiveRoundCache;
+import com.example.trivia.service.PlayerImportService;
+import com.example.trivia.service.PlayerService;
+import com.example.trivia.service.PlayerTokenService;
+import com.example.trivia.service.RoomVersionService;
 import com.example.trivia.service.SseService;
+import com.example.trivia.util.ETags;
 
 @RestController
 public class PlayerController {
-    private final JwtKeyLocator jwtKeyLocator;
+    // The length of the username column
+    private static final int MAX_USERNAME_LENGTH = 255;
+
+    private final ActiveRoundCache activeRoundCache;
+    private final PlayerImportService playerImportService;
     private final PlayerRepository playerRepo;
+    private final PlayerService playerService;
+    private final PlayerTokenService playerTokenService;
     private final RoomRepository roomRepo;
+    private final RoomVersionService roomVersionService;
     private final SseService sseService;
 
     public PlayerController(
-            JwtKeyLocator jwtKeyLocator,
+            ActiveRoundCache activeRoundCache,
+            PlayerImportService playerImportService,
             PlayerRepository playerRepo,
+            PlayerService playerService,
+            PlayerTokenService playerTokenService,
             RoomRepository roomRepo,
+            RoomVersionService roomVersionService,
             SseService sseService) {
-        this.jwtKeyLocator = jwtKeyLocator;
+        this.activeRoundCache = activeRoundCache;
+        this.playerImportService = playerImportService;
         this.playerRepo = playerRepo;
+        this.playerService = playerService;
+        this.playerTokenService = playerTokenService;
         this.roomRepo = roomRepo;
+        this.roomVersionService = roomVersionService;
         this.sseService = sseService;
     }
 
@@ -56,35 +77,101 @@ public class PlayerController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid room code");
         }
 
+        // Read before the player exists, so the token can never carry a team newer than its version
+        long membershipVersion = playerTokenService.getMembershipVersion(roomId);
         Player player = new Player();
         player.setRoomId(roomId);
         player.setUsername(username);
         player = playerRepo.save(player);
 
-        if (playerRepo.findByRoomId(roomId).size() == 1) {
-            room.setHostId(player.getId());
-            roomRepo.save(room);
-        }
+        // The first player to join a room without a host becomes its host, even when several join at once
+        roomRepo.claimHost(roomId, player.getId());
 
-        String jwt = Jwts.builder()
-                .subject(player.getId().toString())
-                .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + 86400000))
-                .signWith(this.jwtKeyLocator.locate(null))
-                .compact();
+        String jwt = playerTokenService.issue(player, membershipVersion);
 
+        activeRoundCache.invalidateRoom(roomId);
         URI location = URI.create("/players/" + player.getId());
         sseService.publish(roomId.toString(), "player-joined", player.getId());
         return ResponseEntity.created(location).body(new RoomJoinResponse(jwt));
     }
 
+    @PostMapping("/players/batch")
+    public ResponseEntity<BulkJoinResponse> joinRoomInBulk(
+            @RequestParam Long roomId,
+            @RequestBody BulkJoinRequest body,
+            HttpServletRequest request) {
+        Room room = roomRepo.findById(roomId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Room not found"));
+
+        Long currentPlayerId = (Long) request.getAttribute("playerId");
+        if (currentPlayerId == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
+        }
+
+        if (!currentPlayerId.equals(room.getHostId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the host can add players in bulk");
+        }
+
+        if (body.usernames() == null || body.usernames().isEmpty() || body.usernames().size() > 1000) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Between 1 and 1000 players can join at once");
+        }
+
+        // Checked before anything is imported, so an invalid username fails the request rather than the batch
+        for (String username : body.usernames()) {
+            if (username == null || username.isBlank() || username.length() > MAX_USERNAME_LENGTH) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Usernames must be between 1 and " + MAX_USERNAME_LENGTH + " characters");
+            }
+        }
+
+        long membershipVersion = playerTokenService.getMembershipVersion(roomId);
+        List<Player> players = playerImportService.importPlayers(roomId, body.usernames());
+        List<BulkJoinResponse.JoinedPlayer> joined = players.stream()
+                .map(player -> new BulkJoinResponse.JoinedPlayer(player.getId(), player.getUsername(),
+                        playerTokenService.issue(player, membershipVersion)))
+                .toList();
+
+        // One event for the whole batch, rather than one per player to everyone already in the room
+        activeRoundCache.invalidateRoom(roomId);
+        sseService.publish(roomId.toString(), "players-joined", players.stream().map(Player::getId).toList());
+        return ResponseEntity.status(HttpStatus.CREATED).body(new BulkJoinResponse(joined));
+    }
+
+    @PostMapping("/players/{id}/token")
+    public ResponseEntity<RoomJoinResponse> refreshToken(@PathVariable Long id, HttpServletRequest request) {
+        Long currentPlayerId = (Long) request.getAttribute("playerId");
+        if (currentPlayerId == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
+        }
+
+        if (!id.equals(currentPlayerId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot refresh the token of another player");
+        }
+
+        Player player = playerRepo.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Player not found"));
+
+        // The player is loaded again after the membership version, so its team is never older than the version
+        String jwt = playerTokenService.issue(player.getRoomId(), id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Player not found"));
+        return ResponseEntity.ok(new RoomJoinResponse(jwt));
+    }
+
     @GetMapping("/players")
-    public ResponseEntity<List<Player>> getPlayers(@RequestParam Long roomId) {
+    public ResponseEntity<List<Player>> getPlayers(
+            @RequestParam Long roomId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        // Every change to the players of a room publishes an event, which changes the version of the room
+        String etag = roomVersionService.getETag(roomId);
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         roomRepo.findById(roomId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Room not found"));
 
         List<Player> players = playerRepo.findByRoomId(roomId);
-        return ResponseEntity.ok(players);
+        return ResponseEntity.ok().eTag(etag).body(players);
     }
 
     @GetMapping("/players/{id}")
@@ -108,23 +195,13 @@ public class PlayerController {
         Room room = roomRepo.findById(player.getRoomId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Room not found"));
 
-        if (!room.getHostId().equals(currentPlayerId) && !id.equals(currentPlayerId)) {
+        if (!currentPlayerId.equals(room.getHostId()) && !id.equals(currentPlayerId)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the host can delete another player");
         }
 
-        if (room.getHostId().equals(currentPlayerId)) {
-            Long hostId = playerRepo.findByRoomId(player.getRoomId())
-                    .stream()
-                    .filter(p -> !p.getId().equals(id))
-                    .findFirst()
-                    .map(Player::getId)
-                    .orElse(null);
-
-            room.setHostId(hostId);
-            roomRepo.save(room);
-        }
-
-        playerRepo.deleteById(id);
+        playerService.deletePlayer(id, player.getRoomId());
+        playerTokenService.bumpMembershipVersion(player.getRoomId());
+        activeRoundCache.invalidateRoom(player.getRoomId());
         sseService.publish(player.getRoomId().toString(), "player-left", id);
         return ResponseEntity.noContent().build();
     }
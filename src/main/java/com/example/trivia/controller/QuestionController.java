@@ -1,48 +1,87 @@
 package com.example.trivia.controller;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
-import com.example.trivia.model.Question;
+import com.example.trivia.model.QuestionRef;
 import com.example.trivia.model.Round;
-import com.example.trivia.repository.QuestionRepository;
-import com.example.trivia.repository.RoundRepository;
+import com.example.trivia.service.ActiveRoundCache;
+import com.example.trivia.service.QuestionCatalog;
+import com.example.trivia.service.RoundResultsCache;
+import com.example.trivia.service.ScoringService;
+import com.example.trivia.util.ETags;
 
 @RestController
 public class QuestionController {
-    private final QuestionRepository questionRepo;
-    private final RoundRepository roundRepo;
+    private final ActiveRoundCache activeRoundCache;
+    private final QuestionCatalog questionCatalog;
+    private final RoundResultsCache roundResultsCache;
+    private final ScoringService scoringService;
 
-    public QuestionController(QuestionRepository questionRepo, RoundRepository roundRepo) {
-        this.questionRepo = questionRepo;
-        this.roundRepo = roundRepo;
+    public QuestionController(
+            ActiveRoundCache activeRoundCache,
+            QuestionCatalog questionCatalog,
+            RoundResultsCache roundResultsCache,
+            ScoringService scoringService) {
+        this.activeRoundCache = activeRoundCache;
+        this.questionCatalog = questionCatalog;
+        this.roundResultsCache = roundResultsCache;
+        this.scoringService = scoringService;
     }
 
-    @GetMapping("/questions")
-    public ResponseEntity<List<Question>> getQuestions(@RequestParam Long roundId) {
-        Round round = roundRepo.findById(roundId)
+    @GetMapping(value = "/questions", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getQuestions(
+            @RequestParam Long roundId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        // A round that has ended is kept with its results, so it is not loaded again for every player
+        Optional<Round> cached = roundResultsCache.getIfPresent(roundId)
+                .map(RoundResultsCache.Results::round)
+                .or(() -> activeRoundCache.getRoundIfPresent(roundId));
+
+        // The questions of a round never change, only whether their correct answers are revealed. Once a round is
+        // closed they are, so a client revalidating its revealed copy of a round that is not cached here is
+        // answered without loading the round.
+        if (cached.isEmpty() && ETags.matches(ifNoneMatch, etag(roundId, true)) && scoringService.isClosed(roundId)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag(roundId, true)).build();
+        }
+
+        Round round = cached
+                .or(() -> activeRoundCache.getRound(roundId))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Round not found"));
 
         if (Instant.now().isBefore(round.getCreatedAt())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Round has not started yet");
         }
 
-        List<Question> questions = questionRepo.findByRoundId(roundId);
-
-        if (Instant.now().isBefore(round.getEndedAt())) {
-            for (Question question : questions) {
-                question.setCorrectAnswers(new ArrayList<>());
-            }
+        boolean revealed = !Instant.now().isBefore(round.getEndedAt());
+        String etag = etag(roundId, revealed);
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
         }
 
-        return ResponseEntity.ok(questions);
+        List<Long> questionIds = round.getQuestions().stream()
+                .map(QuestionRef::getQuestionId)
+                .sorted()
+                .toList();
+
+        // The questions are pre-serialized, with correct answers hidden until the round ends
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(questionCatalog.writeJsonArray(questionIds, revealed));
+    }
+
+    private static String etag(Long roundId, boolean revealed) {
+        return "\"" + roundId + (revealed ? "-revealed" : "-redacted") + "\"";
     }
 }
@@ -3,6 +3,7 @@ package com.example.trivia.controller;
 import java.net.URI;
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -15,30 +16,38 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.example.trivia.dto.PlayerMembership;
+import com.example.trivia.dto.RoomSnapshot;
 import com.example.trivia.model.Room;
 import com.example.trivia.repository.PlayerRepository;
 import com.example.trivia.repository.RoomRepository;
+import com.example.trivia.service.RoomSnapshotService;
 import com.example.trivia.service.SseService;
+import com.example.trivia.util.Cursor;
 import com.example.trivia.util.LinkHeaderBuilder;
 
 @RestController
 public class RoomController {
     private final PlayerRepository playerRepo;
     private final RoomRepository roomRepo;
+    private final RoomSnapshotService roomSnapshotService;
     private final SseService sseService;
 
     public RoomController(
             PlayerRepository playerRepo,
             RoomRepository roomRepo,
+            RoomSnapshotService roomSnapshotService,
             SseService sseService) {
         this.playerRepo = playerRepo;
         this.roomRepo = roomRepo;
+        this.roomSnapshotService = roomSnapshotService;
         this.sseService = sseService;
     }
 
@@ -55,8 +64,13 @@ public class RoomController {
 
     @GetMapping("/rooms")
     public ResponseEntity<List<Room>> getRooms(
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
+        if (cursor != null) {
+            return getRoomsByCursor(cursor, size);
+        }
+
         Page<Room> rooms = roomRepo.findByCodeIsNull(PageRequest.of(page, size));
 
         String url = UriComponentsBuilder.fromPath("/rooms")
@@ -73,24 +87,57 @@ public class RoomController {
         return ResponseEntity.ok().header("Link", linkHeader).body(rooms.toList());
     }
 
+    /**
+     * Returns a page of public rooms from newest to oldest starting after a
+     * cursor, or the first page for an empty cursor, without counting the
+     * rooms.
+     */
+    private ResponseEntity<List<Room>> getRoomsByCursor(String cursor, int size) {
+        return Cursor.respondWithPage(cursor, size, UriComponentsBuilder.fromPath("/rooms"),
+                (after, limit) -> after == null
+                        ? roomRepo.findFirstPublicPage(limit)
+                        : roomRepo.findPublicPageAfter(after.createdAt(), after.id(), limit),
+                room -> new Cursor(room.getCreatedAt(), room.getId()));
+    }
+
     @GetMapping("/rooms/{id}")
     public ResponseEntity<Room> getRoom(@PathVariable Long id, HttpServletRequest request) {
         Room room = roomRepo.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Room not found"));
 
-        if (room.getCode() != null) {
-            Long currentPlayerId = (Long) request.getAttribute("playerId");
-            if (currentPlayerId == null) {
-                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
-            }
+        checkCanView(room, request);
+        return ResponseEntity.ok(room);
+    }
+
+    @GetMapping("/rooms/{id}/snapshot")
+    public ResponseEntity<RoomSnapshot> getRoomSnapshot(@PathVariable Long id, HttpServletRequest request) {
+        // Access is checked as soon as the room is loaded, so the rest of the snapshot is only loaded for viewers
+        RoomSnapshot snapshot = roomSnapshotService.getSnapshot(id, room -> checkCanView(room, request))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Room not found"));
+
+        return ResponseEntity.ok(snapshot);
+    }
 
-            playerRepo.findById(currentPlayerId)
-                    .filter(player -> player.getRoomId().equals(id))
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.FORBIDDEN,
-                            "Only players inside a private room can view it"));
+    /**
+     * Throws unless the current player can view a room, which is any player
+     * for a public room and only the players inside it for a private one.
+     */
+    private void checkCanView(Room room, HttpServletRequest request) {
+        if (room.getCode() == null) {
+            return;
         }
 
-        return ResponseEntity.ok(room);
+        Long currentPlayerId = (Long) request.getAttribute("playerId");
+        if (currentPlayerId == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
+        }
+
+        // A current token carries the room of the player, so the player is only loaded for older tokens
+        Optional.ofNullable((PlayerMembership) request.getAttribute("membership"))
+                .or(() -> playerRepo.findById(currentPlayerId).map(PlayerMembership::of))
+                .filter(membership -> membership.roomId().equals(room.getId()))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.FORBIDDEN,
+                        "Only players inside a private room can view it"));
     }
 
     @DeleteMapping("/rooms/{id}")
@@ -103,7 +150,7 @@ public class RoomController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
         }
 
-        if (!room.getHostId().equals(currentPlayerId)) {
+        if (!currentPlayerId.equals(room.getHostId())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the host can delete a room");
         }
 
@@ -113,14 +160,18 @@ public class RoomController {
 
         roomRepo.deleteById(id);
         sseService.publish(id.toString(), "room-deleted", id);
+        // Subscribers already connected get the event live, and the ids of a room are never reused
+        sseService.deleteTopic(id.toString());
         return ResponseEntity.noContent().build();
     }
 
     @GetMapping(value = "/rooms/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter subscribeToRoomEvents(@PathVariable Long id) {
+    public SseEmitter subscribeToRoomEvents(
+            @PathVariable Long id,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
         roomRepo.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Room not found"));
 
-        return sseService.subscribe(id.toString());
+        return sseService.subscribe(id.toString(), lastEventId);
     }
 }
@@ -1,11 +1,16 @@
 package com.example.trivia.controller;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
@@ -13,31 +18,92 @@ import org.springframework.web.server.ResponseStatusException;
 import com.example.trivia.model.Round;
 import com.example.trivia.repository.GameRepository;
 import com.example.trivia.repository.RoundRepository;
+import com.example.trivia.service.ActiveRoundCache;
+import com.example.trivia.service.RoomVersionService;
+import com.example.trivia.service.RoundResultsCache;
+import com.example.trivia.util.ETags;
 
 @RestController
 public class RoundController {
+    // Answers are written within a flush interval, so the results are ready by the time the client asks again
+    private static final String RESULTS_PENDING_RETRY_AFTER_SECONDS = "1";
+
+    private final ActiveRoundCache activeRoundCache;
     private final GameRepository gameRepo;
+    private final RoomVersionService roomVersionService;
     private final RoundRepository roundRepo;
+    private final RoundResultsCache roundResultsCache;
 
-    public RoundController(GameRepository gameRepo, RoundRepository roundRepo) {
+    public RoundController(
+            ActiveRoundCache activeRoundCache,
+            GameRepository gameRepo,
+            RoomVersionService roomVersionService,
+            RoundRepository roundRepo,
+            RoundResultsCache roundResultsCache) {
+        this.activeRoundCache = activeRoundCache;
         this.gameRepo = gameRepo;
+        this.roomVersionService = roomVersionService;
         this.roundRepo = roundRepo;
+        this.roundResultsCache = roundResultsCache;
     }
 
     @GetMapping("/rounds")
-    public ResponseEntity<List<Round>> getRounds(@RequestParam Long gameId) {
+    public ResponseEntity<List<Round>> getRounds(
+            @RequestParam Long gameId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        // Rounds are created and deleted with their game, which publishes an event to its room
+        Long roomId = roomVersionService.findRoomIdOfGame(gameId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Game not found"));
+        String etag = roomVersionService.getETag(roomId);
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         gameRepo.findById(gameId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Game not found"));
 
         List<Round> rounds = roundRepo.findByGameId(gameId);
-        return ResponseEntity.ok(rounds);
+        return ResponseEntity.ok().eTag(etag).body(rounds);
     }
 
     @GetMapping("/rounds/{id}")
-    public ResponseEntity<Round> getRound(@PathVariable Long id) {
+    public ResponseEntity<Round> getRound(
+            @PathVariable Long id,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        Long roomId = roomVersionService.findRoomIdOfRound(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Round not found"));
+        String etag = roomVersionService.getETag(roomId);
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         Round round = roundRepo.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Round not found"));
 
-        return ResponseEntity.ok(round);
+        return ResponseEntity.ok().eTag(etag).body(round);
+    }
+
+    @GetMapping(value = "/rounds/{id}/results", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getRoundResults(@PathVariable Long id) {
+        Optional<RoundResultsCache.Results> results = roundResultsCache.getIfPresent(id).or(() -> {
+            Round round = activeRoundCache.getRound(id)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Round not found"));
+
+            if (Instant.now().isBefore(round.getEndedAt())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Round has not ended yet");
+            }
+            return roundResultsCache.get(round);
+        });
+
+        // Answers of the round may still be queued on some node, which writes them within a flush interval
+        if (results.isEmpty()) {
+            return ResponseEntity.accepted()
+                    .header(HttpHeaders.RETRY_AFTER, RESULTS_PENDING_RETRY_AFTER_SECONDS)
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(results.get().json());
     }
 }
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
@@ -22,22 +23,31 @@ import com.example.trivia.model.Team;
 import com.example.trivia.repository.PlayerRepository;
 import com.example.trivia.repository.RoomRepository;
 import com.example.trivia.repository.TeamRepository;
+import com.example.trivia.service.PlayerTokenService;
+import com.example.trivia.service.RoomVersionService;
 import com.example.trivia.service.SseService;
+import com.example.trivia.util.ETags;
 
 @RestController
 public class TeamController {
     private final PlayerRepository playerRepo;
+    private final PlayerTokenService playerTokenService;
     private final RoomRepository roomRepo;
+    private final RoomVersionService roomVersionService;
     private final TeamRepository teamRepo;
     private final SseService sseService;
 
     public TeamController(
             PlayerRepository playerRepo,
+            PlayerTokenService playerTokenService,
             RoomRepository roomRepo,
+            RoomVersionService roomVersionService,
             TeamRepository teamRepo,
             SseService sseService) {
         this.playerRepo = playerRepo;
+        this.playerTokenService = playerTokenService;
         this.roomRepo = roomRepo;
+        this.roomVersionService = roomVersionService;
         this.teamRepo = teamRepo;
         this.sseService = sseService;
     }
@@ -52,7 +62,7 @@ public class TeamController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
         }
 
-        if (!room.getHostId().equals(currentPlayerId)) {
+        if (!currentPlayerId.equals(room.getHostId())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the host can create a team");
         }
 
@@ -69,13 +79,50 @@ public class TeamController {
         return ResponseEntity.created(location).body(team);
     }
 
+    @PostMapping("/teams/balance")
+    public ResponseEntity<Void> balanceTeams(@RequestParam Long roomId, HttpServletRequest request) {
+        Room room = roomRepo.findById(roomId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Room not found"));
+
+        Long currentPlayerId = (Long) request.getAttribute("playerId");
+        if (currentPlayerId == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
+        }
+
+        if (!currentPlayerId.equals(room.getHostId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the host can balance the teams");
+        }
+
+        if (room.getGameId() != null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Cannot balance the teams during a game");
+        }
+
+        if (teamRepo.countByRoomId(roomId) == 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Room has no teams");
+        }
+
+        // Every player is assigned by one statement, announced by one event rather than one per player
+        int moved = playerRepo.balanceTeams(roomId);
+        playerTokenService.bumpMembershipVersion(roomId);
+        sseService.publish(roomId.toString(), "teams-rebalanced", moved);
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/teams")
-    public ResponseEntity<List<Team>> getTeams(@RequestParam Long roomId) {
+    public ResponseEntity<List<Team>> getTeams(
+            @RequestParam Long roomId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        // Every change to the teams of a room publishes an event, which changes the version of the room
+        String etag = roomVersionService.getETag(roomId);
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         roomRepo.findById(roomId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Room not found"));
 
         List<Team> teams = teamRepo.findByRoomId(roomId);
-        return ResponseEntity.ok(teams);
+        return ResponseEntity.ok().eTag(etag).body(teams);
     }
 
     @GetMapping("/teams/{id}")
@@ -99,7 +146,7 @@ public class TeamController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
         }
 
-        if (!room.getHostId().equals(currentPlayerId)) {
+        if (!currentPlayerId.equals(room.getHostId())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the host can delete a team");
         }
 
@@ -108,6 +155,7 @@ public class TeamController {
         }
 
         teamRepo.deleteById(id);
+        playerTokenService.bumpMembershipVersion(room.getId());
         sseService.publish(room.getId().toString(), "team-deleted", id);
         return ResponseEntity.noContent().build();
     }
@@ -131,7 +179,7 @@ public class TeamController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
         }
 
-        if (!room.getHostId().equals(currentPlayerId) && !playerId.equals(currentPlayerId)) {
+        if (!currentPlayerId.equals(room.getHostId()) && !playerId.equals(currentPlayerId)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN,
                     "Only the host can assign another player to a team");
         }
@@ -143,6 +191,7 @@ public class TeamController {
 
         player.setTeamId(teamId);
         playerRepo.save(player);
+        playerTokenService.bumpMembershipVersion(room.getId());
         sseService.publish(room.getId().toString(), "player-assigned-to-team", playerId);
         return ResponseEntity.noContent().build();
     }
@@ -166,7 +215,7 @@ public class TeamController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Player not authenticated");
         }
 
-        if (!room.getHostId().equals(currentPlayerId) && !playerId.equals(currentPlayerId)) {
+        if (!currentPlayerId.equals(room.getHostId()) && !playerId.equals(currentPlayerId)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN,
                     "Only the host can remove another player from a team");
         }
@@ -178,6 +227,7 @@ public class TeamController {
 
         player.setTeamId(null);
         playerRepo.save(player);
+        playerTokenService.bumpMembershipVersion(room.getId());
         sseService.publish(room.getId().toString(), "player-removed-from-team", playerId);
         return ResponseEntity.noContent().build();
     }
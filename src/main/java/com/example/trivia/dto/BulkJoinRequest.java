@@ -0,0 +1,8 @@
+package com.example.trivia.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record BulkJoinRequest(@JsonProperty(required = true) List<String> usernames) {
+}
@@ -0,0 +1,12 @@
+package com.example.trivia.dto;
+
+import java.util.List;
+
+/**
+ * The players added to a room at once, in the order of their usernames in the
+ * request, with the token of each.
+ */
+public record BulkJoinResponse(List<JoinedPlayer> players) {
+    public record JoinedPlayer(Long id, String username, String token) {
+    }
+}
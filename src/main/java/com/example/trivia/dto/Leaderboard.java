@@ -0,0 +1,11 @@
+package com.example.trivia.dto;
+
+import java.util.List;
+
+/**
+ * The best players and teams of a game, by descending score.
+ */
+public record Leaderboard(Long gameId, List<Score> players, List<Score> teams) {
+    public record Score(Long id, long score) {
+    }
+}
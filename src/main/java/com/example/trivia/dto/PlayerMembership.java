@@ -0,0 +1,13 @@
+package com.example.trivia.dto;
+
+import com.example.trivia.model.Player;
+
+/**
+ * The room and team of a player, either read from a current token or loaded
+ * from the database.
+ */
+public record PlayerMembership(Long playerId, Long roomId, Long teamId) {
+    public static PlayerMembership of(Player player) {
+        return new PlayerMembership(player.getId(), player.getRoomId(), player.getTeamId());
+    }
+}
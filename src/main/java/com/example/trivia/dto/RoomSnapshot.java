@@ -0,0 +1,28 @@
+package com.example.trivia.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import com.example.trivia.model.Game;
+import com.example.trivia.model.Player;
+import com.example.trivia.model.Room;
+import com.example.trivia.model.Round;
+import com.example.trivia.model.Team;
+
+/**
+ * Everything a client needs to show a room, as of the event with the id of
+ * the version: the room, its players and teams, its current game with its
+ * rounds, and the questions of the current round of the game, which is the
+ * last one that started.
+ */
+public record RoomSnapshot(
+        long version,
+        Room room,
+        List<Player> players,
+        List<Team> teams,
+        Game game,
+        List<Round> rounds,
+        Long currentRoundId,
+        @JsonRawValue String questions) {
+}
@@ -0,0 +1,17 @@
+package com.example.trivia.dto;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+/**
+ * The data of the round-started and round-ended events, with the questions of
+ * the round as they are served by GET /questions at that time.
+ */
+public record RoundEvent(
+        Long id,
+        Long gameId,
+        Instant createdAt,
+        Instant endedAt,
+        @JsonRawValue String questions) {
+}
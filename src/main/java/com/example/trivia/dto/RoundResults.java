@@ -0,0 +1,22 @@
+package com.example.trivia.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+/**
+ * The results of a round that has ended: its questions with their correct
+ * answers, every answer graded, and how many answers of each team were
+ * correct.
+ */
+public record RoundResults(Long roundId, Instant endedAt, List<QuestionResults> questions) {
+    public record QuestionResults(@JsonRawValue String question, List<AnswerResult> answers, List<TeamResult> teams) {
+    }
+
+    public record AnswerResult(Long id, Long playerId, Long teamId, String answer, Instant createdAt, boolean correct) {
+    }
+
+    public record TeamResult(Long teamId, long answers, long correctAnswers) {
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.trivia.repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,7 +12,18 @@ import com.example.trivia.model.Answer;
 
 @Repository
 public interface AnswerRepository extends CrudRepository<Answer, Long> {
+    List<Answer> findByRoundId(Long roundId);
+
     List<Answer> findByRoundIdAndQuestionId(Long roundId, Long questionId);
 
     Optional<Answer> findByRoundIdAndQuestionIdAndPlayerId(Long roundId, Long questionId, Long playerId);
+
+    @Query("""
+            INSERT INTO answers (round_id, question_id, player_id, team_id, created_at, answer)
+            VALUES (:roundId, :questionId, :playerId, :teamId, :createdAt, :answer)
+            ON CONFLICT (round_id, question_id, player_id) DO UPDATE
+            SET team_id = EXCLUDED.team_id, created_at = EXCLUDED.created_at, answer = EXCLUDED.answer
+            WHERE answers.created_at <= EXCLUDED.created_at
+            RETURNING *""")
+    Answer upsert(Long roundId, Long questionId, Long playerId, Long teamId, Instant createdAt, String answer);
 }
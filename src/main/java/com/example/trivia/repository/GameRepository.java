@@ -1,7 +1,11 @@
 package com.example.trivia.repository;
 
+import java.time.Instant;
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
@@ -12,4 +16,31 @@ public interface GameRepository extends CrudRepository<Game, Long> {
     Page<Game> findAll(Pageable pageable);
 
     Page<Game> findByRoomId(Long roomId, Pageable pageable);
+
+    @Query("""
+            SELECT * FROM games
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit""")
+    List<Game> findFirstPage(int limit);
+
+    @Query("""
+            SELECT * FROM games
+            WHERE (created_at, id) < (:createdAt, :id)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit""")
+    List<Game> findPageAfter(Instant createdAt, Long id, int limit);
+
+    @Query("""
+            SELECT * FROM games
+            WHERE room_id = :roomId
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit""")
+    List<Game> findFirstPageByRoomId(Long roomId, int limit);
+
+    @Query("""
+            SELECT * FROM games
+            WHERE room_id = :roomId AND (created_at, id) < (:createdAt, :id)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit""")
+    List<Game> findPageByRoomIdAfter(Long roomId, Instant createdAt, Long id, int limit);
 }
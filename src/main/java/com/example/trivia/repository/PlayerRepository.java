@@ -2,6 +2,8 @@ package com.example.trivia.repository;
 
 import java.util.List;
 
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,4 +12,28 @@ import com.example.trivia.model.Player;
 @Repository
 public interface PlayerRepository extends CrudRepository<Player, Long> {
     List<Player> findByRoomId(Long roomId);
+
+    /**
+     * Deals the players of a room to its teams in turn, in the order they
+     * joined, so team sizes differ by at most one. Players already on the
+     * team they are dealt to are not written.
+     *
+     * @return the number of players who changed team
+     */
+    @Modifying
+    @Query("""
+            WITH ranked_players AS (
+                SELECT id, ROW_NUMBER() OVER (ORDER BY id) - 1 AS position
+                FROM players
+                WHERE room_id = :roomId
+            ), ranked_teams AS (
+                SELECT id, ROW_NUMBER() OVER (ORDER BY id) - 1 AS position, COUNT(*) OVER () AS teams
+                FROM teams
+                WHERE room_id = :roomId
+            )
+            UPDATE players SET team_id = ranked_teams.id
+            FROM ranked_players
+            JOIN ranked_teams ON ranked_teams.position = ranked_players.position % ranked_teams.teams
+            WHERE players.id = ranked_players.id AND players.team_id IS DISTINCT FROM ranked_teams.id""")
+    int balanceTeams(Long roomId);
 }
@@ -1,7 +1,12 @@
 package com.example.trivia.repository;
 
+import java.time.Instant;
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,4 +15,49 @@ import com.example.trivia.model.Room;
 @Repository
 public interface RoomRepository extends CrudRepository<Room, Long> {
     Page<Room> findByCodeIsNull(Pageable pageable);
+
+    @Query("""
+            SELECT * FROM rooms
+            WHERE code IS NULL
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit""")
+    List<Room> findFirstPublicPage(int limit);
+
+    @Query("""
+            SELECT * FROM rooms
+            WHERE code IS NULL AND (created_at, id) < (:createdAt, :id)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit""")
+    List<Room> findPublicPageAfter(Instant createdAt, Long id, int limit);
+
+    /**
+     * Makes a player the host of a room if it has none. Concurrent claims are
+     * serialized on the row of the room, so exactly one of them succeeds.
+     *
+     * @return true if the player became the host
+     */
+    @Modifying
+    @Query("UPDATE rooms SET host_id = :hostId WHERE id = :id AND host_id IS NULL")
+    boolean claimHost(Long id, Long hostId);
+
+    /**
+     * Makes the player of a room who joined first its host if it has none,
+     * such as after its host left.
+     *
+     * @return true if the room got a new host
+     */
+    @Modifying
+    @Query("""
+            UPDATE rooms SET host_id = successor.id
+            FROM (SELECT id FROM players WHERE room_id = :id ORDER BY id LIMIT 1) successor
+            WHERE rooms.id = :id AND rooms.host_id IS NULL""")
+    boolean assignVacantHost(Long id);
+
+    /**
+     * Sets the game of a room without writing its other columns, so the host
+     * or code of the room is never overwritten with a stale copy.
+     */
+    @Modifying
+    @Query("UPDATE rooms SET game_id = :gameId WHERE id = :id")
+    boolean setGameId(Long id, Long gameId);
 }
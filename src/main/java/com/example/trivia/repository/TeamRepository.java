@@ -10,4 +10,6 @@ import com.example.trivia.model.Team;
 @Repository
 public interface TeamRepository extends CrudRepository<Team, Long> {
     List<Team> findByRoomId(Long roomId);
+
+    long countByRoomId(Long roomId);
 }
@@ -0,0 +1,168 @@
+package com.example.trivia.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import com.example.trivia.model.Game;
+import com.example.trivia.model.Player;
+import com.example.trivia.model.Round;
+import com.example.trivia.repository.GameRepository;
+import com.example.trivia.repository.PlayerRepository;
+import com.example.trivia.repository.RoundRepository;
+
+/**
+ * Keeps the rounds that have not ended in memory together with their game and
+ * the players of the room, so answer submissions can be validated without
+ * querying the database.
+ *
+ * Invalidations are broadcast through Redis, so a change on any node evicts
+ * the affected rounds on every node.
+ */
+@Service
+public class ActiveRoundCache {
+
+    private static final String INVALIDATION_CHANNEL = "active-rounds:invalidations";
+
+    /**
+     * A round that has not ended with its questions, its game and the players
+     * of the room of the game by id.
+     */
+    public record ActiveRound(Round round, Game game, Map<Long, Player> players) {
+    }
+
+    private final GameRepository gameRepo;
+    private final PlayerRepository playerRepo;
+    private final RoundRepository roundRepo;
+    private final StringRedisTemplate redisTemplate;
+    private final Map<Long, ActiveRound> rounds = new ConcurrentHashMap<>();
+    // Incremented by every invalidation, so a round loaded before one is not cached after it
+    private final AtomicLong generation = new AtomicLong();
+
+    public ActiveRoundCache(
+            GameRepository gameRepo,
+            PlayerRepository playerRepo,
+            RoundRepository roundRepo,
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer redisMessageListenerContainer) {
+        this.gameRepo = gameRepo;
+        this.playerRepo = playerRepo;
+        this.roundRepo = roundRepo;
+        this.redisTemplate = redisTemplate;
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> evict(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * Returns a round with its game and the players of its room, loading and
+     * caching it if it is not cached and has not ended.
+     *
+     * @param roundId the id of the round
+     * @return the round, or empty if the round or its game do not exist
+     */
+    public Optional<ActiveRound> get(Long roundId) {
+        ActiveRound cached = rounds.get(roundId);
+        if (cached != null) {
+            if (Instant.now().isBefore(cached.round().getEndedAt())) {
+                return Optional.of(cached);
+            }
+            rounds.remove(roundId, cached);
+        }
+
+        long loadGeneration = generation.get();
+        Optional<ActiveRound> loaded = roundRepo.findById(roundId)
+                .flatMap(round -> gameRepo.findById(round.getGameId())
+                        .map(game -> new ActiveRound(round, game, loadPlayers(game.getRoomId()))));
+
+        loaded.filter(activeRound -> Instant.now().isBefore(activeRound.round().getEndedAt()))
+                .ifPresent(activeRound -> {
+                    rounds.values().removeIf(entry -> !Instant.now().isBefore(entry.round().getEndedAt()));
+                    if (generation.get() == loadGeneration) {
+                        rounds.putIfAbsent(roundId, activeRound);
+                    }
+                });
+
+        return loaded;
+    }
+
+    /**
+     * Returns a round with its questions if it is cached, without loading it.
+     *
+     * @param roundId the id of the round
+     * @return the round, or empty if it is not cached
+     */
+    public Optional<Round> getRoundIfPresent(Long roundId) {
+        return Optional.ofNullable(rounds.get(roundId)).map(ActiveRound::round);
+    }
+
+    /**
+     * Returns a round with its questions, from the cache if it has not ended.
+     * A round that has ended is loaded on its own, without its game and the
+     * players of its room.
+     *
+     * @param roundId the id of the round
+     * @return the round, or empty if it does not exist
+     */
+    public Optional<Round> getRound(Long roundId) {
+        ActiveRound cached = rounds.get(roundId);
+        if (cached != null) {
+            return Optional.of(cached.round());
+        }
+
+        return roundRepo.findById(roundId)
+                .flatMap(round -> Instant.now().isBefore(round.getEndedAt())
+                        ? get(roundId).map(ActiveRound::round)
+                        : Optional.of(round));
+    }
+
+    /**
+     * Evicts the rounds of the game in a room on every node, for example when
+     * a game is created or players join or leave.
+     *
+     * @param roomId the id of the room
+     */
+    public void invalidateRoom(Long roomId) {
+        evict("room:" + roomId);
+        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, "room:" + roomId);
+    }
+
+    /**
+     * Evicts the rounds of a game on every node, for example when the game is
+     * deleted.
+     *
+     * @param gameId the id of the game
+     */
+    public void invalidateGame(Long gameId) {
+        evict("game:" + gameId);
+        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, "game:" + gameId);
+    }
+
+    private Map<Long, Player> loadPlayers(Long roomId) {
+        Map<Long, Player> players = new HashMap<>();
+        for (Player player : playerRepo.findByRoomId(roomId)) {
+            players.put(player.getId(), player);
+        }
+        return Collections.unmodifiableMap(players);
+    }
+
+    private void evict(String invalidation) {
+        int separator = invalidation.indexOf(':');
+        String scope = invalidation.substring(0, separator);
+        Long id = Long.valueOf(invalidation.substring(separator + 1));
+        generation.incrementAndGet();
+        rounds.values().removeIf(entry -> scope.equals("room")
+                ? id.equals(entry.game().getRoomId())
+                : id.equals(entry.game().getId()));
+    }
+}
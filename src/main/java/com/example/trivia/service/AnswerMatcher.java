@@ -0,0 +1,285 @@
+package com.example.trivia.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides whether an answer is correct, from the correct answers of a
+ * question compiled once, so matching an answer does not allocate.
+ */
+public abstract class AnswerMatcher {
+
+    // Variants shorter than this, such as "v8" or "alt", are always matched exactly, where a single edit gives
+    // another answer rather than a typo
+    private static final int MIN_LENGTH_FOR_EDIT_DISTANCE = 5;
+    // Punctuation that decorates a variant without changing it, such as "useMemo()" or "Hello, world!". Other
+    // symbols, such as the ones of "C++", "C#" or "4.5:1", are significant
+    private static final String DECORATIVE_PUNCTUATION = "()[]{}'\"`.,;:!?-";
+    // Sized from the variants of a matcher rather than from the answers, so a huge answer leaves no huge buffer
+    private static final ThreadLocal<char[]> NORMALIZED = ThreadLocal.withInitial(() -> new char[256]);
+    private static final ThreadLocal<int[][]> ROWS = ThreadLocal.withInitial(() -> new int[2][64]);
+
+    /**
+     * Returns whether an answer is correct.
+     *
+     * @param answer the submitted answer, which may be null
+     */
+    public abstract boolean matches(String answer);
+
+    /**
+     * Compiles the correct answers of a question.
+     *
+     * Multiple-choice answers select one or several options, separated by
+     * newlines, and are correct when the distinct selected options are exactly
+     * the correct ones, ignoring case and surrounding whitespace. Other answers
+     * are correct when they match one of the correct answers once case and
+     * whitespace are folded. Punctuation is folded too, and longer answers
+     * tolerate typos, only for correct answers made of letters and decorative
+     * punctuation, so "C" does not match "C++" nor "451" match "4.5:1".
+     *
+     * @param type            the type of the question
+     * @param correctAnswers  the correct answers of the question
+     * @param maxEditDistance the number of typos tolerated in longer answers
+     * @return the matcher
+     */
+    public static AnswerMatcher compile(String type, List<String> correctAnswers, int maxEditDistance) {
+        if ("multiple_choice".equals(type)) {
+            return new ChoiceMatcher(correctAnswers);
+        }
+        return new TextMatcher(correctAnswers, maxEditDistance);
+    }
+
+    /**
+     * Matches selected options against the correct options.
+     */
+    private static final class ChoiceMatcher extends AnswerMatcher {
+        private final String[] options;
+        // Every correct option selected, one bit per option
+        private final long allSelected;
+
+        private ChoiceMatcher(List<String> correctAnswers) {
+            this.options = correctAnswers.stream()
+                    .map(String::strip)
+                    .filter(option -> !option.isEmpty())
+                    .map(option -> option.toLowerCase(Locale.ROOT))
+                    .distinct()
+                    .toArray(String[]::new);
+            if (options.length > Long.SIZE) {
+                throw new IllegalArgumentException("A question has at most " + Long.SIZE + " correct options");
+            }
+            this.allSelected = options.length == Long.SIZE ? -1L : (1L << options.length) - 1;
+        }
+
+        @Override
+        public boolean matches(String answer) {
+            if (answer == null || options.length == 0) {
+                return false;
+            }
+
+            long selected = 0;
+            int start = 0;
+            while (start <= answer.length()) {
+                int end = answer.indexOf('\n', start);
+                if (end < 0) {
+                    end = answer.length();
+                }
+
+                int from = start;
+                int to = end;
+                while (from < to && Character.isWhitespace(answer.charAt(from))) {
+                    from++;
+                }
+                while (to > from && Character.isWhitespace(answer.charAt(to - 1))) {
+                    to--;
+                }
+
+                if (from < to) {
+                    int option = indexOfOption(answer, from, to - from);
+                    if (option < 0) {
+                        return false;
+                    }
+                    // Selecting an option twice selects it once
+                    selected |= 1L << option;
+                }
+                start = end + 1;
+            }
+            return selected == allSelected;
+        }
+
+        private int indexOfOption(String answer, int offset, int length) {
+            for (int i = 0; i < options.length; i++) {
+                String option = options[i];
+                if (option.length() == length && option.regionMatches(true, 0, answer, offset, length)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Matches a free text answer against variants folded once, the ones whose
+     * punctuation is significant only after case and whitespace.
+     */
+    private static final class TextMatcher extends AnswerMatcher {
+        private final char[][] variants;
+        // Whether each variant is folded to its letters, so punctuation and typos are tolerated
+        private final boolean[] loose;
+        private final int maxEditDistance;
+        // The longest answer, once folded, that can match a variant
+        private final int maxLength;
+
+        private TextMatcher(List<String> correctAnswers, int maxEditDistance) {
+            this.variants = new char[correctAnswers.size()][];
+            this.loose = new boolean[variants.length];
+            int longest = 0;
+            for (int i = 0; i < variants.length; i++) {
+                String correctAnswer = correctAnswers.get(i);
+                char[] buffer = new char[correctAnswer.length()];
+                loose[i] = isLoose(correctAnswer);
+                int length = loose[i]
+                        ? foldLoose(correctAnswer, buffer, 0, buffer.length)
+                        : foldExact(correctAnswer, buffer, 0, buffer.length);
+                variants[i] = Arrays.copyOf(buffer, length);
+                longest = Math.max(longest, length);
+            }
+            this.maxEditDistance = maxEditDistance;
+            this.maxLength = longest + maxEditDistance;
+        }
+
+        @Override
+        public boolean matches(String answer) {
+            if (answer == null) {
+                return false;
+            }
+
+            // The exact fold of the answer goes first, its loose fold second, each cut one past the longest match
+            int capacity = maxLength + 1;
+            char[] normalized = NORMALIZED.get();
+            if (normalized.length < 2 * capacity) {
+                normalized = new char[2 * capacity];
+                NORMALIZED.set(normalized);
+            }
+
+            int exactLength = foldExact(answer, normalized, 0, capacity);
+            int looseLength = foldLoose(answer, normalized, capacity, capacity);
+            if (exactLength == 0) {
+                return false;
+            }
+
+            for (int i = 0; i < variants.length; i++) {
+                char[] variant = variants[i];
+                if (!loose[i]) {
+                    if (Arrays.equals(variant, 0, variant.length, normalized, 0, exactLength)) {
+                        return true;
+                    }
+                } else if (looseLength <= maxLength) {
+                    if (Arrays.equals(variant, 0, variant.length, normalized, capacity, capacity + looseLength)) {
+                        return true;
+                    }
+                    if (maxEditDistance > 0 && variant.length >= MIN_LENGTH_FOR_EDIT_DISTANCE
+                            && isWithinEditDistance(variant, normalized, capacity, looseLength, maxEditDistance)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns whether a variant is made of letters, whitespace and
+         * decorative punctuation only, so folding its punctuation and typos
+         * cannot make it another answer.
+         */
+        private static boolean isLoose(String variant) {
+            boolean hasLetter = false;
+            for (int i = 0; i < variant.length(); i++) {
+                char c = variant.charAt(i);
+                if (Character.isLetter(c)) {
+                    hasLetter = true;
+                } else if (!Character.isWhitespace(c) && DECORATIVE_PUNCTUATION.indexOf(c) < 0) {
+                    return false;
+                }
+            }
+            return hasLetter;
+        }
+    }
+
+    /**
+     * Writes a text in lower case without whitespace, stopping once it fills
+     * a capacity.
+     *
+     * @return the length of the folded text, which is the capacity when the
+     *         text did not fit
+     */
+    private static int foldExact(String text, char[] out, int offset, int capacity) {
+        int length = 0;
+        for (int i = 0; i < text.length() && length < capacity; i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                out[offset + length++] = Character.toLowerCase(c);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes the letters and digits of a text in lower case, stopping once it
+     * fills a capacity.
+     *
+     * @return the length of the folded text, which is the capacity when the
+     *         text did not fit
+     */
+    private static int foldLoose(String text, char[] out, int offset, int capacity) {
+        int length = 0;
+        for (int i = 0; i < text.length() && length < capacity; i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                out[offset + length++] = Character.toLowerCase(c);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns whether the Levenshtein distance between a variant and a text is
+     * at most a bound, computing only as many rows as needed.
+     */
+    private static boolean isWithinEditDistance(char[] variant, char[] text, int textOffset, int textLength,
+            int bound) {
+        if (Math.abs(variant.length - textLength) > bound) {
+            return false;
+        }
+
+        int[][] rows = ROWS.get();
+        if (rows[0].length <= variant.length) {
+            rows = new int[2][variant.length + 1];
+            ROWS.set(rows);
+        }
+
+        int[] previous = rows[0];
+        int[] current = rows[1];
+        for (int j = 0; j <= variant.length; j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= textLength; i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= variant.length; j++) {
+                int cost = text[textOffset + i - 1] == variant[j - 1] ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > bound) {
+                return false;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[variant.length] <= bound;
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.trivia.service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import jakarta.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.trivia.model.Answer;
+import com.example.trivia.repository.AnswerRepository;
+
+/**
+ * Writes answers behind the requests that submit them, upserting them in JDBC
+ * batches when the flush interval passes or a batch fills up, so the cost of a
+ * commit is shared by every answer of the batch.
+ *
+ * Answers that fail to be written because the database is unavailable stay
+ * queued for the next flush. The ones that can never be written, such as the
+ * answers of a deleted game or malformed answers, are logged and handed back
+ * to the submitter, which was already told they were accepted.
+ *
+ * Every node counts the answers of each round that it accepted but has not
+ * written yet in Redis, so any node can tell once the answers of a round that
+ * has ended are all in the database.
+ */
+@Service
+public class AnswerWriter {
+
+    private static final Log logger = LogFactory.getLog(AnswerWriter.class);
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO answers (round_id, question_id, player_id, team_id, created_at, answer)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (round_id, question_id, player_id) DO UPDATE
+            SET team_id = EXCLUDED.team_id, created_at = EXCLUDED.created_at, answer = EXCLUDED.answer
+            WHERE answers.created_at <= EXCLUDED.created_at""";
+    private static final Duration UNWRITTEN_TTL = Duration.ofDays(1);
+    // Counts an answer of a round as unwritten
+    private static final RedisScript<Long> UNWRITTEN_SCRIPT = RedisScript.of("""
+            local count = redis.call('INCR', KEYS[1])
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return count""", Long.class);
+    // Takes ARGV[i] answers that were written or dropped off the count of KEYS[i], without creating a count again
+    // once it expired
+    private static final RedisScript<Long> DONE_SCRIPT = RedisScript.of("""
+            for i, key in ipairs(KEYS) do
+                if redis.call('EXISTS', key) == 1 then
+                    redis.call('DECRBY', key, ARGV[i])
+                end
+            end
+            return #KEYS""", Long.class);
+
+    /**
+     * A queued answer with what to do if it can never be written, which is
+     * given the answer of the player to the question that is stored instead.
+     */
+    private record Pending(Answer answer, Consumer<Optional<Answer>> onDropped) {
+    }
+
+    private final AnswerRepository answerRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final int batchSize;
+    private final BlockingQueue<Pending> queue;
+    // The batch being written, which is kept across flushes while the database is unavailable
+    private final List<Pending> batch = new ArrayList<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("answer-writer").factory());
+
+    public AnswerWriter(
+            AnswerRepository answerRepo,
+            JdbcTemplate jdbcTemplate,
+            StringRedisTemplate redisTemplate,
+            @Value("${answers.batch-size}") int batchSize,
+            @Value("${answers.queue-capacity}") int queueCapacity,
+            @Value("${answers.flush-interval-millis}") long flushIntervalMillis) {
+        this.answerRepo = answerRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisTemplate = redisTemplate;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        flusher.scheduleWithFixedDelay(this::flushInBackground, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues an answer to be written with the next batch. When the queue is
+     * full the answer is written right away instead, so submissions slow down
+     * rather than get lost, and a failure is thrown to the caller. The answer
+     * is counted as unwritten until it is written or dropped.
+     *
+     * @param answer    the validated answer to write
+     * @param onDropped called if the answer is never written, with the stored
+     *                  answer of the player to the question, if any
+     */
+    public void submit(Answer answer, Consumer<Optional<Answer>> onDropped) {
+        Pending pending = new Pending(answer, onDropped);
+        try {
+            // Counted before it is queued, so no node sees every answer of its round written while it is not
+            redisTemplate.execute(UNWRITTEN_SCRIPT, List.of(unwrittenKey(answer.getRoundId())),
+                    String.valueOf(UNWRITTEN_TTL.toSeconds()));
+        } catch (RuntimeException e) {
+            drop(pending, e);
+            throw e;
+        }
+
+        if (!queue.offer(pending)) {
+            try {
+                write(answer);
+            } catch (DataAccessException e) {
+                drop(pending, e);
+                throw e;
+            } finally {
+                done(List.of(pending));
+            }
+            return;
+        }
+
+        if (queue.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                flushInBackground();
+            });
+        }
+    }
+
+    /**
+     * Writes every queued answer. Returns once the answers queued before the
+     * call are in the database, even the ones that a concurrent flush took,
+     * so reads that follow see them, unless the database is unavailable, in
+     * which case they stay queued for the next flush.
+     */
+    public synchronized void flush() {
+        while (!batch.isEmpty() || queue.drainTo(batch, batchSize) > 0) {
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, batch, batch.size(), (ps, pending) -> {
+                    Answer answer = pending.answer();
+                    ps.setLong(1, answer.getRoundId());
+                    ps.setLong(2, answer.getQuestionId());
+                    ps.setLong(3, answer.getPlayerId());
+                    ps.setLong(4, answer.getTeamId());
+                    ps.setTimestamp(5, Timestamp.from(answer.getCreatedAt()));
+                    ps.setString(6, answer.getAnswer());
+                });
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    // Nothing more is drained, so the queue fills up and new submissions are written synchronously,
+                    // failing rather than being accepted while the database is down
+                    logger.warn("Could not write " + batch.size() + " answers, retrying with the next flush", e);
+                    return;
+                }
+
+                // Retry one by one, so an answer that can't be written (e.g. its game was deleted, or it is malformed) does not
+                // take the rest of the batch with it
+                if (!writeOneByOne()) {
+                    return;
+                }
+            }
+            done(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes the answers of the batch one by one, removing each answer that is
+     * written or dropped.
+     *
+     * @return false if the database became unavailable, in which case the
+     *         rest of the batch is kept for the next flush
+     */
+    private boolean writeOneByOne() {
+        List<Pending> removed = new ArrayList<>();
+        try {
+            Iterator<Pending> iterator = batch.iterator();
+            while (iterator.hasNext()) {
+                Pending pending = iterator.next();
+                try {
+                    write(pending.answer());
+                } catch (RuntimeException e) {
+                    if (isTransient(e)) {
+                        logger.warn("Could not write " + batch.size() + " answers, retrying with the next flush", e);
+                        return false;
+                    }
+                    drop(pending, e);
+                }
+                iterator.remove();
+                removed.add(pending);
+            }
+            return true;
+        } finally {
+            done(removed);
+        }
+    }
+
+    /**
+     * Returns the number of answers to a round that were accepted on any node
+     * and are not written or dropped yet.
+     *
+     * @param roundId the id of the round
+     * @return the number of unwritten answers, which is 0 once every answer
+     *         accepted so far is in the database
+     */
+    public long getUnwrittenCount(Long roundId) {
+        String count = redisTemplate.opsForValue().get(unwrittenKey(roundId));
+        return count != null ? Long.parseLong(count) : 0;
+    }
+
+    /**
+     * Takes answers that were written or dropped off the counts of unwritten
+     * answers of their rounds. A failure is only logged, so the answers stay
+     * counted until the count expires and the results of their rounds wait
+     * for as long as they wait for a node that went away.
+     */
+    private void done(Collection<Pending> answers) {
+        if (answers.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Integer> counts = new LinkedHashMap<>();
+        for (Pending pending : answers) {
+            counts.merge(pending.answer().getRoundId(), 1, Integer::sum);
+        }
+        try {
+            redisTemplate.execute(DONE_SCRIPT, counts.keySet().stream().map(AnswerWriter::unwrittenKey).toList(),
+                    counts.values().stream().map(String::valueOf).toArray());
+        } catch (RuntimeException e) {
+            logger.warn("Could not count " + answers.size() + " answers as written", e);
+        }
+    }
+
+    /**
+     * Flushes from the flusher thread, logging rather than throwing any
+     * failure, since a scheduled task that throws is never run again and the
+     * queued answers would wait until the queue fills up.
+     */
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Could not flush answers, retrying with the next flush", e);
+        }
+    }
+
+    private void drop(Pending pending, RuntimeException cause) {
+        Answer answer = pending.answer();
+        logger.error("Dropped the answer of player " + answer.getPlayerId() + " to question "
+                + answer.getQuestionId() + " of round " + answer.getRoundId(), cause);
+        try {
+            pending.onDropped().accept(answerRepo.findByRoundIdAndQuestionIdAndPlayerId(
+                    answer.getRoundId(), answer.getQuestionId(), answer.getPlayerId()));
+        } catch (RuntimeException e) {
+            logger.error("Could not reconcile the dropped answer of player " + answer.getPlayerId()
+                    + " to question " + answer.getQuestionId() + " of round " + answer.getRoundId(), e);
+        }
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+
+    private static String unwrittenKey(Long roundId) {
+        return "rounds:" + roundId + ":unwritten-answers";
+    }
+
+    private void write(Answer answer) {
+        answerRepo.upsert(answer.getRoundId(), answer.getQuestionId(), answer.getPlayerId(), answer.getTeamId(),
+                answer.getCreatedAt(), answer.getAnswer());
+    }
+}
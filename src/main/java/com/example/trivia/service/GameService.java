@@ -0,0 +1,169 @@
+package com.example.trivia.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.trivia.model.Game;
+import com.example.trivia.model.Room;
+import com.example.trivia.model.Round;
+import com.example.trivia.repository.GameRepository;
+import com.example.trivia.repository.RoomRepository;
+
+/**
+ * Creates games with their rounds and questions in a single transaction, so a
+ * failure never leaves a partial game behind.
+ */
+@Service
+public class GameService {
+
+    private static final String INSERT_ROUND_SQL = """
+            INSERT INTO rounds (game_id, created_at, ended_at)
+            VALUES (?, ?, ?)""";
+    private static final String INSERT_ROUND_QUESTION_SQL = """
+            INSERT INTO round_questions (round_id, question_id)
+            VALUES (?, ?)""";
+
+    /**
+     * A question of a round, which is a row of round_questions.
+     */
+    private record RoundQuestion(long roundId, long questionId) {
+    }
+
+    private final GameRepository gameRepo;
+    private final RoomRepository roomRepo;
+    private final QuestionCatalog questionCatalog;
+    private final RoundScheduler roundScheduler;
+    private final JdbcTemplate jdbcTemplate;
+
+    public GameService(
+            GameRepository gameRepo,
+            RoomRepository roomRepo,
+            QuestionCatalog questionCatalog,
+            RoundScheduler roundScheduler,
+            JdbcTemplate jdbcTemplate) {
+        this.gameRepo = gameRepo;
+        this.roomRepo = roomRepo;
+        this.questionCatalog = questionCatalog;
+        this.roundScheduler = roundScheduler;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Creates a game in a room with rounds that follow each other, drawing
+     * distinct random questions for every round.
+     *
+     * The game is saved and set as the game of the room with a statement
+     * each, while the rounds and their questions are inserted with one JDBC
+     * batch each, so the number of round trips does not depend on the size of
+     * the game. The transitions of the rounds are scheduled once the
+     * transaction commits.
+     *
+     * @param room              the room of the game, which becomes its game
+     * @param rounds            the number of rounds
+     * @param timePerRound      the duration of every round
+     * @param questionsPerRound the number of questions of every round, such
+     *                          that the catalog has enough questions for the
+     *                          whole game
+     * @return the saved game
+     */
+    @Transactional
+    public Game createGame(Room room, int rounds, Duration timePerRound, int questionsPerRound) {
+        Game game = new Game();
+        game.setRoomId(room.getId());
+        game.setCreatedAt(Instant.now());
+        game.setEndedAt(game.getCreatedAt().plus(timePerRound.multipliedBy(rounds)));
+        game = gameRepo.save(game);
+
+        room.setGameId(game.getId());
+        roomRepo.setGameId(room.getId(), game.getId());
+
+        List<Round> gameRounds = insertRounds(game, rounds, timePerRound);
+
+        // Every question of the game is drawn at once, without querying the database
+        Iterator<Long> questionIds = questionCatalog.sample(rounds * questionsPerRound).iterator();
+        List<RoundQuestion> roundQuestions = new ArrayList<>(rounds * questionsPerRound);
+        for (Round round : gameRounds) {
+            for (int questionNumber = 1; questionNumber <= questionsPerRound; questionNumber++) {
+                roundQuestions.add(new RoundQuestion(round.getId(), questionIds.next()));
+            }
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_ROUND_QUESTION_SQL, roundQuestions, roundQuestions.size(),
+                (ps, roundQuestion) -> {
+                    ps.setLong(1, roundQuestion.roundId());
+                    ps.setLong(2, roundQuestion.questionId());
+                });
+
+        scheduleAfterCommit(game, gameRounds);
+        return game;
+    }
+
+    /**
+     * Schedules the transitions of a game once it is committed, so no event
+     * announces a round that could still be rolled back.
+     */
+    private void scheduleAfterCommit(Game game, List<Round> rounds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            roundScheduler.schedule(game, rounds);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                roundScheduler.schedule(game, rounds);
+            }
+        });
+    }
+
+    private List<Round> insertRounds(Game game, int rounds, Duration timePerRound) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_ROUND_SQL, new String[] { "id" }),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, game.getId());
+                        ps.setTimestamp(2, Timestamp.from(roundStart(game, timePerRound, i)));
+                        ps.setTimestamp(3, Timestamp.from(roundStart(game, timePerRound, i + 1)));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rounds;
+                    }
+                },
+                keyHolder);
+
+        List<Round> gameRounds = new ArrayList<>(rounds);
+        for (Map<String, Object> keys : keyHolder.getKeyList()) {
+            Round round = new Round();
+            round.setId(((Number) keys.get("id")).longValue());
+            round.setGameId(game.getId());
+            round.setCreatedAt(roundStart(game, timePerRound, gameRounds.size()));
+            round.setEndedAt(roundStart(game, timePerRound, gameRounds.size() + 1));
+            gameRounds.add(round);
+        }
+        return gameRounds;
+    }
+
+    private static Instant roundStart(Game game, Duration timePerRound, int index) {
+        return game.getCreatedAt().plus(timePerRound.multipliedBy(index));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.trivia.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.trivia.model.Player;
+
+/**
+ * Adds many players to a room at once, such as the attendees of an event, so
+ * setting up a large room does not take a request per player.
+ */
+@Service
+public class PlayerImportService {
+
+    private static final String INSERT_PLAYER_SQL = """
+            INSERT INTO players (room_id, username)
+            VALUES (?, ?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PlayerImportService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts players into a room with a single JDBC batch, in a single
+     * transaction, so either all of them join or none does.
+     *
+     * @param roomId    the id of the room
+     * @param usernames the usernames of the players, in the order they join
+     * @return the saved players, in the same order
+     */
+    @Transactional
+    public List<Player> importPlayers(Long roomId, List<String> usernames) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_PLAYER_SQL, new String[] { "id" }),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, roomId);
+                        ps.setString(2, usernames.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return usernames.size();
+                    }
+                },
+                keyHolder);
+
+        List<Player> players = new ArrayList<>(usernames.size());
+        for (Map<String, Object> keys : keyHolder.getKeyList()) {
+            Player player = new Player();
+            player.setId(((Number) keys.get("id")).longValue());
+            player.setRoomId(roomId);
+            player.setUsername(usernames.get(players.size()));
+            players.add(player);
+        }
+        return players;
+    }
+}
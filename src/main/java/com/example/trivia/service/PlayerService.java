@@ -0,0 +1,41 @@
+package com.example.trivia.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.trivia.repository.PlayerRepository;
+import com.example.trivia.repository.RoomRepository;
+
+/**
+ * Removes players from their rooms, handing the host of a room over to
+ * another player when its host leaves.
+ */
+@Service
+public class PlayerService {
+
+    private final PlayerRepository playerRepo;
+    private final RoomRepository roomRepo;
+
+    public PlayerService(PlayerRepository playerRepo, RoomRepository roomRepo) {
+        this.playerRepo = playerRepo;
+        this.roomRepo = roomRepo;
+    }
+
+    /**
+     * Deletes a player and assigns a successor if the room lost its host, in a
+     * single transaction, so a room is never left without a host while it
+     * has players.
+     *
+     * Deleting the host clears the host of the room through its foreign key,
+     * so the successor is picked after the delete, which also covers a
+     * successor leaving at the same time.
+     *
+     * @param playerId the id of the player
+     * @param roomId   the id of the room of the player
+     */
+    @Transactional
+    public void deletePlayer(Long playerId, Long roomId) {
+        playerRepo.deleteById(playerId);
+        roomRepo.assignVacantHost(roomId);
+    }
+}
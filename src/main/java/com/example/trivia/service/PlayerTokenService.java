@@ -0,0 +1,172 @@
+package com.example.trivia.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import com.example.trivia.component.JwtKeyLocator;
+import com.example.trivia.dto.PlayerMembership;
+import com.example.trivia.model.Player;
+import com.example.trivia.repository.PlayerRepository;
+
+/**
+ * Issues player tokens that carry the room and team of the player, so
+ * authorization checks can skip loading the player.
+ *
+ * Every room has a membership version that is bumped whenever a player of the
+ * room changes team or leaves. A token only vouches for the membership of its
+ * player while its version is the current one. Older tokens still
+ * authenticate the player, but their membership has to be loaded until the
+ * player refreshes their token.
+ *
+ * Versions are kept in Redis and cached on every node. Bumps are broadcast, so
+ * checking a version normally costs no network round trip, and cached
+ * versions are read again after a while in case a broadcast was missed.
+ */
+@Service
+public class PlayerTokenService {
+
+    private static final Duration TOKEN_TTL = Duration.ofDays(1);
+    private static final String VERSION_CHANNEL = "rooms:membership-versions";
+    private static final long VERSION_MAX_AGE_NANOS = Duration.ofSeconds(30).toNanos();
+
+    private record CachedVersion(long version, long loadedAt) {
+    }
+
+    private final JwtKeyLocator jwtKeyLocator;
+    private final PlayerRepository playerRepo;
+    private final StringRedisTemplate redisTemplate;
+    private final Map<Long, CachedVersion> membershipVersions = new ConcurrentHashMap<>();
+
+    public PlayerTokenService(
+            JwtKeyLocator jwtKeyLocator,
+            PlayerRepository playerRepo,
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer redisMessageListenerContainer) {
+        this.jwtKeyLocator = jwtKeyLocator;
+        this.playerRepo = playerRepo;
+        this.redisTemplate = redisTemplate;
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String bump = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = bump.indexOf(':');
+            cacheVersion(Long.valueOf(bump.substring(0, separator)), Long.parseLong(bump.substring(separator + 1)));
+        }, new ChannelTopic(VERSION_CHANNEL));
+    }
+
+    /**
+     * Issues a token for a player with its current room and team, reading the
+     * membership version of the room before the player, so a team change
+     * committed in between makes the token stale rather than current with the
+     * previous team.
+     *
+     * @param roomId   the id of the room of the player
+     * @param playerId the id of the player
+     * @return the compact token, or empty if the player is not in the room
+     */
+    public Optional<String> issue(Long roomId, Long playerId) {
+        long version = getMembershipVersion(roomId);
+        return playerRepo.findById(playerId)
+                .filter(player -> roomId.equals(player.getRoomId()))
+                .map(player -> issue(player, version));
+    }
+
+    /**
+     * Issues a token for a player with its room and team, which must have been
+     * loaded or created after the membership version was read.
+     *
+     * @param player            the player
+     * @param membershipVersion the membership version of the room of the
+     *                          player, read before the player
+     * @return the compact token
+     */
+    public String issue(Player player, long membershipVersion) {
+        JwtBuilder builder = Jwts.builder()
+                .subject(player.getId().toString())
+                .claim("roomId", player.getRoomId())
+                .claim("ver", membershipVersion)
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + TOKEN_TTL.toMillis()))
+                .signWith(jwtKeyLocator.locate(null));
+
+        if (player.getTeamId() != null) {
+            builder.claim("teamId", player.getTeamId());
+        }
+
+        return builder.compact();
+    }
+
+    /**
+     * Returns the membership carried by the claims of a token, if the token
+     * was issued with the current membership version of its room.
+     *
+     * @param claims the verified claims of a token
+     * @return the membership, or null if the token does not carry a current
+     *         one
+     */
+    public PlayerMembership getMembership(Claims claims) {
+        Long roomId = claims.get("roomId", Long.class);
+        Long version = claims.get("ver", Long.class);
+        if (roomId == null || version == null || version != getMembershipVersion(roomId)) {
+            return null;
+        }
+
+        return new PlayerMembership(Long.valueOf(claims.getSubject()), roomId, claims.get("teamId", Long.class));
+    }
+
+    /**
+     * Makes the tokens issued so far for the players of a room stop vouching
+     * for their membership, on every node. Called when a player changes team
+     * or leaves the room.
+     *
+     * @param roomId the id of the room
+     */
+    public void bumpMembershipVersion(Long roomId) {
+        Long version = redisTemplate.opsForValue().increment(versionKey(roomId));
+        if (version == null) {
+            return;
+        }
+
+        cacheVersion(roomId, version);
+        redisTemplate.convertAndSend(VERSION_CHANNEL, roomId + ":" + version);
+    }
+
+    /**
+     * Returns the current membership version of a room, to issue tokens for
+     * players loaded or created after it.
+     *
+     * @param roomId the id of the room
+     * @return the version, which is 0 until a player changes team or leaves
+     */
+    public long getMembershipVersion(Long roomId) {
+        CachedVersion cached = membershipVersions.get(roomId);
+        if (cached != null && System.nanoTime() - cached.loadedAt() < VERSION_MAX_AGE_NANOS) {
+            return cached.version();
+        }
+
+        String stored = redisTemplate.opsForValue().get(versionKey(roomId));
+        return cacheVersion(roomId, stored != null ? Long.parseLong(stored) : 0);
+    }
+
+    private long cacheVersion(Long roomId, long version) {
+        // Versions only increase, so a stale read or a late broadcast never rolls a version back
+        return membershipVersions.merge(roomId, new CachedVersion(version, System.nanoTime()),
+                (current, loaded) -> new CachedVersion(Math.max(current.version(), loaded.version()),
+                        loaded.loadedAt())).version();
+    }
+
+    private static String versionKey(Long roomId) {
+        return "rooms:" + roomId + ":membership-version";
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.trivia.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import tools.jackson.databind.json.JsonMapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.trivia.model.Question;
+import com.example.trivia.repository.QuestionRepository;
+
+/**
+ * Keeps every question in memory, so questions can be sampled for a game and
+ * served to players without querying the database, however big the catalog
+ * is.
+ *
+ * The catalog is an immutable snapshot that is loaded at startup and replaced
+ * as a whole by {@link #refresh()}, so readers never lock.
+ */
+@Service
+public class QuestionCatalog {
+
+    /**
+     * A question of the catalog with its compiled correct answers and its
+     * JSON representations, the redacted one without correct answers and the
+     * revealed one with them.
+     */
+    public record Entry(
+            long id,
+            String type,
+            List<String> options,
+            List<String> correctAnswers,
+            AnswerMatcher matcher,
+            byte[] redacted,
+            byte[] revealed) {
+    }
+
+    private record Snapshot(long[] ids, Map<Long, Entry> entries) {
+    }
+
+    private final QuestionRepository questionRepo;
+    private final JsonMapper jsonMapper;
+    private final int maxEditDistance;
+    private volatile Snapshot snapshot;
+
+    public QuestionCatalog(
+            QuestionRepository questionRepo,
+            JsonMapper jsonMapper,
+            @Value("${grading.max-edit-distance}") int maxEditDistance) {
+        this.questionRepo = questionRepo;
+        this.jsonMapper = jsonMapper;
+        this.maxEditDistance = maxEditDistance;
+    }
+
+    /**
+     * Returns the number of questions in the catalog.
+     */
+    public int size() {
+        return snapshot().ids().length;
+    }
+
+    /**
+     * Returns a question of the catalog, reloading the catalog once if the
+     * question was added after it was loaded.
+     *
+     * @param id the id of the question
+     * @return the question, or null if it does not exist
+     */
+    public Entry get(Long id) {
+        Entry entry = snapshot().entries().get(id);
+        if (entry == null) {
+            refresh();
+            entry = snapshot().entries().get(id);
+        }
+        return entry;
+    }
+
+    /**
+     * Writes questions as a JSON array by concatenating their serialized
+     * forms, skipping the ones that do not exist.
+     *
+     * @param questionIds the ids of the questions
+     * @param revealed    whether to include the correct answers
+     * @return the JSON array as UTF-8 bytes
+     */
+    public byte[] writeJsonArray(Collection<Long> questionIds, boolean revealed) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        json.write('[');
+        for (Long id : questionIds) {
+            Entry entry = get(id);
+            if (entry == null) {
+                continue;
+            }
+            if (json.size() > 1) {
+                json.write(',');
+            }
+            json.writeBytes(revealed ? entry.revealed() : entry.redacted());
+        }
+        json.write(']');
+        return json.toByteArray();
+    }
+
+    /**
+     * Draws distinct questions uniformly at random, in O(count) time and
+     * space, using Floyd's sampling algorithm.
+     *
+     * @param count the number of questions to draw, not greater than the size
+     * @return the ids of the questions, in random order
+     */
+    public List<Long> sample(int count) {
+        long[] ids = snapshot().ids();
+        if (count > ids.length) {
+            throw new IllegalArgumentException("Cannot sample " + count + " of " + ids.length + " questions");
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Set<Integer> indexes = new HashSet<>();
+        List<Long> sample = new ArrayList<>(count);
+        for (int upper = ids.length - count; upper < ids.length; upper++) {
+            int index = random.nextInt(upper + 1);
+            if (!indexes.add(index)) {
+                index = upper;
+                indexes.add(index);
+            }
+            sample.add(ids[index]);
+        }
+
+        // Floyd's algorithm draws a uniform subset but not in a uniform order, so the order is shuffled
+        for (int i = sample.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            sample.set(i, sample.set(j, sample.get(i)));
+        }
+
+        return sample;
+    }
+
+    /**
+     * Reloads the catalog, for example after questions are added to the
+     * database.
+     */
+    public synchronized void refresh() {
+        Map<Long, Entry> entries = new HashMap<>();
+        for (Question question : questionRepo.findAll()) {
+            List<String> correctAnswers = question.getCorrectAnswers() != null
+                    ? List.copyOf(question.getCorrectAnswers())
+                    : List.of();
+            byte[] revealed = jsonMapper.writeValueAsBytes(question);
+            question.setCorrectAnswers(List.of());
+            byte[] redacted = jsonMapper.writeValueAsBytes(question);
+
+            entries.put(question.getId(), new Entry(question.getId(), question.getType(),
+                    question.getOptions() != null ? List.copyOf(question.getOptions()) : List.of(),
+                    correctAnswers, AnswerMatcher.compile(question.getType(), correctAnswers, maxEditDistance),
+                    redacted, revealed));
+        }
+
+        long[] ids = entries.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        snapshot = new Snapshot(ids, Map.copyOf(entries));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        snapshot();
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.trivia.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.trivia.dto.RoomSnapshot;
+import com.example.trivia.model.Game;
+import com.example.trivia.model.Player;
+import com.example.trivia.model.QuestionRef;
+import com.example.trivia.model.Room;
+import com.example.trivia.model.Round;
+import com.example.trivia.model.Team;
+import com.example.trivia.repository.GameRepository;
+import com.example.trivia.repository.PlayerRepository;
+import com.example.trivia.repository.RoomRepository;
+import com.example.trivia.repository.TeamRepository;
+
+/**
+ * Assembles the snapshot of a room that a client loads when it enters the
+ * room or reconnects to its events, with one query per table and no query
+ * per round.
+ */
+@Service
+public class RoomSnapshotService {
+
+    // Rounds are read without their questions, which the snapshot only needs for the current round
+    private static final String SELECT_ROUNDS_SQL = """
+            SELECT id, game_id, created_at, ended_at FROM rounds
+            WHERE game_id = ?
+            ORDER BY created_at, id""";
+    private static final String SELECT_QUESTION_IDS_SQL = """
+            SELECT question_id FROM round_questions
+            WHERE round_id = ?
+            ORDER BY question_id""";
+
+    private final ActiveRoundCache activeRoundCache;
+    private final GameRepository gameRepo;
+    private final PlayerRepository playerRepo;
+    private final QuestionCatalog questionCatalog;
+    private final RoomRepository roomRepo;
+    private final SseService sseService;
+    private final TeamRepository teamRepo;
+    private final JdbcTemplate jdbcTemplate;
+
+    public RoomSnapshotService(
+            ActiveRoundCache activeRoundCache,
+            GameRepository gameRepo,
+            PlayerRepository playerRepo,
+            QuestionCatalog questionCatalog,
+            RoomRepository roomRepo,
+            SseService sseService,
+            TeamRepository teamRepo,
+            JdbcTemplate jdbcTemplate) {
+        this.activeRoundCache = activeRoundCache;
+        this.gameRepo = gameRepo;
+        this.playerRepo = playerRepo;
+        this.questionCatalog = questionCatalog;
+        this.roomRepo = roomRepo;
+        this.sseService = sseService;
+        this.teamRepo = teamRepo;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Returns the snapshot of a room.
+     *
+     * The version is the id of the last event of the room read before the
+     * snapshot, so the snapshot reflects at least every event up to it, and
+     * a client that subscribes with it as the Last-Event-ID misses no event.
+     * Events after the version may already be reflected too, so clients
+     * apply them idempotently.
+     *
+     * @param roomId the id of the room
+     * @return the snapshot, or empty if the room does not exist
+     */
+    public Optional<RoomSnapshot> getSnapshot(Long roomId) {
+        return getSnapshot(roomId, room -> {
+        });
+    }
+
+    /**
+     * Returns the snapshot of a room, checking access to the room before the
+     * rest of the snapshot is loaded.
+     *
+     * @param roomId      the id of the room
+     * @param checkAccess called with the room once it is loaded, which throws
+     *                    to deny access to it
+     * @return the snapshot, or empty if the room does not exist
+     */
+    public Optional<RoomSnapshot> getSnapshot(Long roomId, Consumer<Room> checkAccess) {
+        long version = sseService.getLastEventId(roomId.toString());
+
+        Optional<Room> room = roomRepo.findById(roomId);
+        if (room.isEmpty()) {
+            return Optional.empty();
+        }
+        checkAccess.accept(room.get());
+
+        List<Player> players = playerRepo.findByRoomId(roomId);
+        List<Team> teams = teamRepo.findByRoomId(roomId);
+
+        Game game = room.get().getGameId() != null ? gameRepo.findById(room.get().getGameId()).orElse(null) : null;
+        List<Round> rounds = game != null
+                ? jdbcTemplate.query(SELECT_ROUNDS_SQL, (rs, rowNum) -> {
+                    Round round = new Round();
+                    round.setId(rs.getLong("id"));
+                    round.setGameId(rs.getLong("game_id"));
+                    round.setCreatedAt(rs.getObject("created_at", OffsetDateTime.class).toInstant());
+                    OffsetDateTime endedAt = rs.getObject("ended_at", OffsetDateTime.class);
+                    round.setEndedAt(endedAt != null ? endedAt.toInstant() : null);
+                    return round;
+                }, game.getId())
+                : List.of();
+
+        Instant now = Instant.now();
+        Round currentRound = null;
+        for (Round round : rounds) {
+            if (!now.isBefore(round.getCreatedAt())) {
+                currentRound = round;
+            }
+        }
+
+        // The questions of a live round come from the cache of active rounds if it is cached, and are read on their
+        // own otherwise, rather than loading the round into the cache with the players already loaded above. They
+        // are redacted until the round ends.
+        String questions = null;
+        if (currentRound != null) {
+            boolean revealed = currentRound.getEndedAt() != null && !now.isBefore(currentRound.getEndedAt());
+            Long currentRoundId = currentRound.getId();
+            List<Long> questionIds = activeRoundCache.getRoundIfPresent(currentRoundId)
+                    .map(round -> round.getQuestions().stream()
+                            .map(QuestionRef::getQuestionId)
+                            .sorted()
+                            .toList())
+                    .orElseGet(() -> jdbcTemplate.queryForList(SELECT_QUESTION_IDS_SQL, Long.class, currentRoundId));
+            questions = new String(questionCatalog.writeJsonArray(questionIds, revealed), StandardCharsets.UTF_8);
+        }
+
+        return Optional.of(new RoomSnapshot(version, room.get(), players, teams, game, rounds,
+                currentRound != null ? currentRound.getId() : null, questions));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.trivia.service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import com.example.trivia.repository.GameRepository;
+import com.example.trivia.repository.RoundRepository;
+
+/**
+ * Versions the data of every room, so read endpoints can answer conditional
+ * requests without querying the database.
+ *
+ * The version of a room is the version of its event topic, which changes with
+ * every event, since every change to a room, its players, teams, games and
+ * rounds publishes an event to the room.
+ * The room of a game or a round never changes, so it is cached once known.
+ */
+@Service
+public class RoomVersionService {
+
+    private static final Log logger = LogFactory.getLog(RoomVersionService.class);
+
+    // Bounds the rooms of games and rounds kept, which are all dropped at once when it is reached
+    private static final int MAX_CACHED_ROOMS = 100_000;
+
+    private final GameRepository gameRepo;
+    private final RoundRepository roundRepo;
+    private final SseService sseService;
+    private final Map<Long, Long> gameRooms = new ConcurrentHashMap<>();
+    private final Map<Long, Long> roundRooms = new ConcurrentHashMap<>();
+
+    public RoomVersionService(
+            GameRepository gameRepo,
+            RoundRepository roundRepo,
+            SseService sseService) {
+        this.gameRepo = gameRepo;
+        this.roundRepo = roundRepo;
+        this.sseService = sseService;
+    }
+
+    /**
+     * Returns the entity tag of the data of a room at its current version.
+     * It is weak, since lists of the room may be serialized in any order.
+     * Read it before the data, so a tag never claims a newer version than
+     * the data it is sent with.
+     *
+     * @param roomId the id of the room
+     * @return the entity tag, quoted, or null if the version of the room is
+     *         unknown, in which case the data is served unconditionally
+     */
+    public String getETag(Long roomId) {
+        try {
+            String version = sseService.getVersion(roomId.toString());
+            return version != null ? "W/\"" + roomId + "-" + version + "\"" : null;
+        } catch (DataAccessException e) {
+            logger.warn("Could not read the version of room " + roomId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the id of the room of a game.
+     *
+     * @param gameId the id of the game
+     * @return the id of the room, or empty if the game does not exist
+     */
+    public Optional<Long> findRoomIdOfGame(Long gameId) {
+        Long roomId = gameRooms.get(gameId);
+        if (roomId != null) {
+            return Optional.of(roomId);
+        }
+
+        return gameRepo.findById(gameId).map(game -> {
+            remember(gameRooms, gameId, game.getRoomId());
+            return game.getRoomId();
+        });
+    }
+
+    /**
+     * Returns the id of the room of a round.
+     *
+     * @param roundId the id of the round
+     * @return the id of the room, or empty if the round does not exist
+     */
+    public Optional<Long> findRoomIdOfRound(Long roundId) {
+        Long roomId = roundRooms.get(roundId);
+        if (roomId != null) {
+            return Optional.of(roomId);
+        }
+
+        Optional<Long> found = roundRepo.findById(roundId).flatMap(round -> findRoomIdOfGame(round.getGameId()));
+        found.ifPresent(id -> remember(roundRooms, roundId, id));
+        return found;
+    }
+
+    private static void remember(Map<Long, Long> rooms, Long id, Long roomId) {
+        if (rooms.size() >= MAX_CACHED_ROOMS) {
+            rooms.clear();
+        }
+        rooms.put(id, roomId);
+    }
+}
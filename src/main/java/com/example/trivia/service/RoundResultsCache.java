@@ -0,0 +1,200 @@
+package com.example.trivia.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import tools.jackson.databind.json.JsonMapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.trivia.dto.RoundResults;
+import com.example.trivia.model.Answer;
+import com.example.trivia.model.QuestionRef;
+import com.example.trivia.model.Round;
+import com.example.trivia.repository.AnswerRepository;
+
+/**
+ * Computes the results of a round once it has ended and keeps them serialized
+ * for a while, since every player of the room asks for them as soon as the
+ * round ends.
+ *
+ * Concurrent requests for the results of a round wait for a single
+ * computation, so the answers of a round are read once however many players
+ * ask for them at the same time.
+ *
+ * Answers accepted right before a round ends may still be queued on any node,
+ * so results are only computed once every node has written the answers of the
+ * round it accepted, as counted in Redis, or once the round has been over for
+ * so long that the nodes which have not must have gone away. Until then they
+ * are not ready, and callers are expected to ask again rather than wait.
+ */
+@Service
+public class RoundResultsCache {
+
+    /**
+     * The results of a round that has ended, serialized as a whole and as the
+     * answers to each of its questions.
+     */
+    public record Results(Round round, byte[] json, Map<Long, byte[]> answers, Instant expiresAt) {
+    }
+
+    private final AnswerRepository answerRepo;
+    private final AnswerWriter answerWriter;
+    private final JsonMapper jsonMapper;
+    private final QuestionCatalog questionCatalog;
+    private final Duration maxWait;
+    private final Duration ttl;
+    private final Map<Long, CompletableFuture<Results>> results = new ConcurrentHashMap<>();
+
+    public RoundResultsCache(
+            AnswerRepository answerRepo,
+            AnswerWriter answerWriter,
+            JsonMapper jsonMapper,
+            QuestionCatalog questionCatalog,
+            @Value("${round-results.max-wait-millis}") long maxWaitMillis,
+            @Value("${round-results.ttl-seconds}") long ttlSeconds) {
+        this.answerRepo = answerRepo;
+        this.answerWriter = answerWriter;
+        this.jsonMapper = jsonMapper;
+        this.questionCatalog = questionCatalog;
+        this.maxWait = Duration.ofMillis(maxWaitMillis);
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+    }
+
+    /**
+     * Returns the results of a round if they are computed and have not
+     * expired, without computing them.
+     *
+     * @param roundId the id of the round
+     * @return the results, or empty if they are not cached
+     */
+    public Optional<Results> getIfPresent(Long roundId) {
+        CompletableFuture<Results> future = results.get(roundId);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally() || isExpired(future)) {
+            return Optional.empty();
+        }
+        return Optional.of(future.join());
+    }
+
+    /**
+     * Returns the results of a round, computing them if they are not cached.
+     * Callers that ask while they are computed wait for them rather than
+     * compute them again, and a failure is thrown to every one of them.
+     * Callers that ask right after the round ends get nothing until the
+     * answers of every node are written, without waiting for them.
+     *
+     * @param round the round, which has ended
+     * @return the results, or empty if answers of the round may still be
+     *         unwritten
+     */
+    public Optional<Results> get(Round round) {
+        Instant now = Instant.now();
+        if (now.isBefore(round.getEndedAt())) {
+            throw new IllegalArgumentException("Round " + round.getId() + " has not ended");
+        }
+
+        // Results that were computed once are settled, even when they expired
+        if (!results.containsKey(round.getId()) && !isSettled(round, now)) {
+            return Optional.empty();
+        }
+
+        CompletableFuture<Results> created = new CompletableFuture<>();
+        CompletableFuture<Results> future = results.compute(round.getId(),
+                (id, cached) -> cached == null || isExpired(cached) ? created : cached);
+
+        if (future == created) {
+            results.values().removeIf(this::isExpired);
+            try {
+                created.complete(load(round));
+            } catch (RuntimeException e) {
+                // Not cached, so the next request tries again
+                results.remove(round.getId(), created);
+                created.completeExceptionally(e);
+            }
+        }
+
+        try {
+            return Optional.of(future.join());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private boolean isSettled(Round round, Instant now) {
+        if (!now.isBefore(round.getEndedAt().plus(maxWait))) {
+            return true;
+        }
+        if (answerWriter.getUnwrittenCount(round.getId()) <= 0) {
+            return true;
+        }
+
+        // The unwritten answers may be queued on this node, which writes them right away rather than with its next
+        // flush
+        answerWriter.flush();
+        return answerWriter.getUnwrittenCount(round.getId()) <= 0;
+    }
+
+    private boolean isExpired(CompletableFuture<Results> future) {
+        return future.isDone() && !future.isCompletedExceptionally()
+                && !Instant.now().isBefore(future.join().expiresAt());
+    }
+
+    private Results load(Round round) {
+        // Answers of a node that went away are given up on, but the ones queued on this node are written first
+        answerWriter.flush();
+
+        Map<Long, List<Answer>> answersByQuestion = new LinkedHashMap<>();
+        round.getQuestions().stream()
+                .map(QuestionRef::getQuestionId)
+                .sorted()
+                .forEach(questionId -> answersByQuestion.put(questionId, new ArrayList<>()));
+        for (Answer answer : answerRepo.findByRoundId(round.getId())) {
+            List<Answer> answers = answersByQuestion.get(answer.getQuestionId());
+            if (answers != null) {
+                answers.add(answer);
+            }
+        }
+
+        List<RoundResults.QuestionResults> questions = new ArrayList<>(answersByQuestion.size());
+        Map<Long, byte[]> answersJson = new HashMap<>();
+        for (Map.Entry<Long, List<Answer>> entry : answersByQuestion.entrySet()) {
+            QuestionCatalog.Entry question = questionCatalog.get(entry.getKey());
+            if (question == null) {
+                continue;
+            }
+
+            List<RoundResults.AnswerResult> answers = new ArrayList<>(entry.getValue().size());
+            Map<Long, long[]> teams = new LinkedHashMap<>();
+            for (Answer answer : entry.getValue()) {
+                boolean correct = question.matcher().matches(answer.getAnswer());
+                answers.add(new RoundResults.AnswerResult(answer.getId(), answer.getPlayerId(), answer.getTeamId(),
+                        answer.getAnswer(), answer.getCreatedAt(), correct));
+
+                long[] counts = teams.computeIfAbsent(answer.getTeamId(), teamId -> new long[2]);
+                counts[0]++;
+                counts[1] += correct ? 1 : 0;
+            }
+
+            List<RoundResults.TeamResult> teamResults = new ArrayList<>(teams.size());
+            teams.forEach((teamId, counts) -> teamResults.add(new RoundResults.TeamResult(teamId, counts[0], counts[1])));
+
+            questions.add(new RoundResults.QuestionResults(
+                    new String(question.revealed(), StandardCharsets.UTF_8), answers, teamResults));
+            answersJson.put(entry.getKey(), jsonMapper.writeValueAsBytes(entry.getValue()));
+        }
+
+        byte[] json = jsonMapper.writeValueAsBytes(new RoundResults(round.getId(), round.getEndedAt(), questions));
+        return new Results(round, json, Map.copyOf(answersJson), Instant.now().plus(ttl));
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.trivia.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import com.example.trivia.dto.RoundEvent;
+import com.example.trivia.model.Game;
+import com.example.trivia.model.QuestionRef;
+import com.example.trivia.model.Round;
+import com.example.trivia.repository.GameRepository;
+import com.example.trivia.repository.RoundRepository;
+
+/**
+ * Announces the transitions of the rounds of every game to its room, as
+ * round-started, round-ended and game-ended events, so clients do not poll.
+ *
+ * Transitions are kept in a Redis sorted set by time. The node that creates a
+ * game fires its transitions at their exact times, and every node polls the
+ * set for the transitions that are due, in case that node went away.
+ *
+ * A node claims a transition by moving it to a set of transitions in flight,
+ * scored by when its lease expires, so only one node fires it at a time. The
+ * transition leaves that set once it is fired. If the node fails to fire it,
+ * or goes away before it does, the lease expires and polling moves the
+ * transition back to the schedule, so it is fired again rather than lost.
+ */
+@Service
+public class RoundScheduler {
+
+    private static final Log logger = LogFactory.getLog(RoundScheduler.class);
+    private static final String SCHEDULE_KEY = "rounds:schedule";
+    private static final String IN_FLIGHT_KEY = "rounds:in-flight";
+    private static final long LEASE_MILLIS = 30_000;
+    private static final String ROUND_STARTED = "round-started";
+    private static final String ROUND_ENDED = "round-ended";
+    private static final String GAME_ENDED = "game-ended";
+    private static final int POLL_BATCH_SIZE = 100;
+
+    // Moves a transition from the schedule to the transitions in flight, leased until ARGV[2]
+    private static final RedisScript<Long> CLAIM_SCRIPT = RedisScript.of("""
+            if redis.call('ZREM', KEYS[1], ARGV[1]) == 1 then
+                redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1])
+                return 1
+            end
+            return 0""", Long.class);
+
+    // Moves the transitions whose lease expired by ARGV[1] back to the schedule, due right away
+    private static final RedisScript<Long> REQUEUE_SCRIPT = RedisScript.of("""
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[2], 0, ARGV[1], 'LIMIT', 0, ARGV[2])
+            for _, transition in ipairs(expired) do
+                redis.call('ZREM', KEYS[2], transition)
+                redis.call('ZADD', KEYS[1], ARGV[1], transition)
+            end
+            return #expired""", Long.class);
+
+    private final ActiveRoundCache activeRoundCache;
+    private final GameRepository gameRepo;
+    private final QuestionCatalog questionCatalog;
+    private final RoundRepository roundRepo;
+    private final ScoringService scoringService;
+    private final SseService sseService;
+    private final StringRedisTemplate redisTemplate;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("round-scheduler").daemon().factory());
+    // Transitions load rounds and publish events, which is done off the timer thread so it stays on time
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+
+    public RoundScheduler(
+            ActiveRoundCache activeRoundCache,
+            GameRepository gameRepo,
+            QuestionCatalog questionCatalog,
+            RoundRepository roundRepo,
+            ScoringService scoringService,
+            SseService sseService,
+            StringRedisTemplate redisTemplate,
+            @Value("${rounds.poll-interval-millis}") long pollIntervalMillis) {
+        this.activeRoundCache = activeRoundCache;
+        this.gameRepo = gameRepo;
+        this.questionCatalog = questionCatalog;
+        this.roundRepo = roundRepo;
+        this.scoringService = scoringService;
+        this.sseService = sseService;
+        this.redisTemplate = redisTemplate;
+        timer.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules the transitions of a new game and of its rounds.
+     *
+     * @param game   the game, once it is saved
+     * @param rounds the rounds of the game
+     */
+    public void schedule(Game game, List<Round> rounds) {
+        Set<ZSetOperations.TypedTuple<String>> transitions = new HashSet<>();
+        for (Round round : rounds) {
+            transitions.add(transition(ROUND_STARTED, round.getId(), round.getCreatedAt()));
+            transitions.add(transition(ROUND_ENDED, round.getId(), round.getEndedAt()));
+        }
+        transitions.add(transition(GAME_ENDED, game.getId(), game.getEndedAt()));
+        redisTemplate.opsForZSet().add(SCHEDULE_KEY, transitions);
+
+        long now = System.currentTimeMillis();
+        for (ZSetOperations.TypedTuple<String> transition : transitions) {
+            long delay = Math.max(transition.getScore().longValue() - now, 0);
+            timer.schedule(() -> claim(transition.getValue()), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    private static ZSetOperations.TypedTuple<String> transition(String event, Long id, Instant at) {
+        return ZSetOperations.TypedTuple.of(event + ":" + id, (double) at.toEpochMilli());
+    }
+
+    private void poll() {
+        try {
+            long now = System.currentTimeMillis();
+            Long requeued = redisTemplate.execute(REQUEUE_SCRIPT, List.of(SCHEDULE_KEY, IN_FLIGHT_KEY),
+                    String.valueOf(now), String.valueOf(POLL_BATCH_SIZE));
+            if (requeued != null && requeued > 0) {
+                logger.warn("Retrying " + requeued + " round transitions whose lease expired");
+            }
+
+            Set<String> due = redisTemplate.opsForZSet().rangeByScore(SCHEDULE_KEY, 0, now, 0, POLL_BATCH_SIZE);
+            if (due != null) {
+                due.forEach(this::claim);
+            }
+        } catch (RuntimeException e) {
+            // A failed poll must not cancel the next ones
+            logger.warn("Could not poll the round schedule", e);
+        }
+    }
+
+    private void claim(String transition) {
+        Long claimed = redisTemplate.execute(CLAIM_SCRIPT, List.of(SCHEDULE_KEY, IN_FLIGHT_KEY), transition,
+                String.valueOf(System.currentTimeMillis() + LEASE_MILLIS));
+        if (claimed != null && claimed == 1) {
+            dispatcher.execute(() -> fire(transition));
+        }
+    }
+
+    private void fire(String transition) {
+        int separator = transition.lastIndexOf(':');
+        String event = transition.substring(0, separator);
+        Long id = Long.valueOf(transition.substring(separator + 1));
+
+        try {
+            switch (event) {
+                case ROUND_STARTED -> activeRoundCache.get(id)
+                        .ifPresent(activeRound -> publish(event, activeRound.round(), activeRound.game(), false));
+                case ROUND_ENDED -> roundRepo.findById(id).ifPresent(round -> gameRepo.findById(round.getGameId())
+                        .ifPresent(game -> {
+                            publish(event, round, game, true);
+                            scoringService.closeRound(round, game);
+                        }));
+                case GAME_ENDED -> gameRepo.findById(id)
+                        .ifPresent(game -> sseService.publish(game.getRoomId().toString(), event, game.getId()));
+                default -> logger.warn("Unknown round transition " + transition);
+            }
+            redisTemplate.opsForZSet().remove(IN_FLIGHT_KEY, transition);
+        } catch (RuntimeException e) {
+            // The lease is kept, so the transition is fired again once it expires
+            logger.error("Could not fire round transition " + transition + ", retrying once its lease expires", e);
+        }
+    }
+
+    private void publish(String event, Round round, Game game, boolean revealed) {
+        List<Long> questionIds = round.getQuestions().stream()
+                .map(QuestionRef::getQuestionId)
+                .sorted()
+                .toList();
+        String questions = new String(questionCatalog.writeJsonArray(questionIds, revealed), StandardCharsets.UTF_8);
+
+        sseService.publish(game.getRoomId().toString(), event,
+                new RoundEvent(round.getId(), game.getId(), round.getCreatedAt(), round.getEndedAt(), questions));
+    }
+}
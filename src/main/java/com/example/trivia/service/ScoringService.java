@@ -0,0 +1,280 @@
+package com.example.trivia.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import com.example.trivia.dto.Leaderboard;
+import com.example.trivia.model.Answer;
+import com.example.trivia.model.Game;
+import com.example.trivia.model.Round;
+
+/**
+ * Grades answers as they are submitted and keeps the scores of the players and
+ * teams of every game in Redis sorted sets, so a leaderboard is read in
+ * O(log n + k) without aggregating the answers table.
+ *
+ * Answers are graded into the scores of their round, which are only merged
+ * into the scores of the game once the round is closed, so the leaderboard
+ * never tells whether an answer is correct while it can still be changed.
+ * Rounds are closed by the RoundScheduler when they end, and answers graded
+ * after that go straight to the scores of the game.
+ */
+@Service
+public class ScoringService {
+
+    private static final Duration SCORES_TTL = Duration.ofDays(1);
+    private static final int PUBLISHED_LEADERBOARD_SIZE = 10;
+    // Records the grade of an answer unless a later answer of the player to the question was already graded, and
+    // applies the difference with its previous grade to the round scores, and to the game scores when the round is
+    // already closed
+    private static final RedisScript<Long> GRADE_SCRIPT = RedisScript.of("""
+            local delta = tonumber(ARGV[3])
+            local previous = redis.call('HGET', KEYS[1], ARGV[1])
+            if previous then
+                local separator = string.find(previous, ':')
+                if tonumber(string.sub(previous, 1, separator - 1)) > tonumber(ARGV[2]) then
+                    return 0
+                end
+                delta = delta - tonumber(string.sub(previous, separator + 1))
+            end
+            redis.call('HSET', KEYS[1], ARGV[1], ARGV[2] .. ':' .. ARGV[3])
+            local scores = {KEYS[2], KEYS[3]}
+            local members = {ARGV[4], ARGV[5]}
+            if redis.call('EXISTS', KEYS[4]) == 1 then
+                scores = {KEYS[2], KEYS[3], KEYS[5], KEYS[6]}
+                members = {ARGV[4], ARGV[5], ARGV[4], ARGV[5]}
+            end
+            for i, key in ipairs(scores) do
+                redis.call('ZINCRBY', key, delta, members[i])
+                redis.call('EXPIRE', key, ARGV[6])
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[6])
+            return delta
+            """, Long.class);
+    // Replaces the grade of an answer that could not be written with the grade of the answer that is stored, unless
+    // a later answer of the player to the question was graded since, and applies the difference like GRADE_SCRIPT
+    private static final RedisScript<Long> RECONCILE_SCRIPT = RedisScript.of("""
+            local recorded = redis.call('HGET', KEYS[1], ARGV[1])
+            if not recorded then
+                return 0
+            end
+            local separator = string.find(recorded, ':')
+            if tonumber(string.sub(recorded, 1, separator - 1)) ~= tonumber(ARGV[2]) then
+                return 0
+            end
+            local delta = tonumber(ARGV[4]) - tonumber(string.sub(recorded, separator + 1))
+            if ARGV[3] == '' then
+                redis.call('HDEL', KEYS[1], ARGV[1])
+            else
+                redis.call('HSET', KEYS[1], ARGV[1], ARGV[3] .. ':' .. ARGV[4])
+            end
+            local scores = {KEYS[2], KEYS[3]}
+            local members = {ARGV[5], ARGV[6]}
+            if redis.call('EXISTS', KEYS[4]) == 1 then
+                scores = {KEYS[2], KEYS[3], KEYS[5], KEYS[6]}
+                members = {ARGV[5], ARGV[6], ARGV[5], ARGV[6]}
+            end
+            for i, key in ipairs(scores) do
+                redis.call('ZINCRBY', key, delta, members[i])
+            end
+            return delta
+            """, Long.class);
+    // Merges the round scores into the game scores exactly once
+    private static final RedisScript<Long> CLOSE_SCRIPT = RedisScript.of("""
+            if redis.call('SET', KEYS[1], '1', 'NX', 'EX', ARGV[1]) == false then
+                return 0
+            end
+            redis.call('ZUNIONSTORE', KEYS[4], 2, KEYS[4], KEYS[2])
+            redis.call('ZUNIONSTORE', KEYS[5], 2, KEYS[5], KEYS[3])
+            redis.call('EXPIRE', KEYS[4], ARGV[1])
+            redis.call('EXPIRE', KEYS[5], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final QuestionCatalog questionCatalog;
+    private final SseService sseService;
+    private final StringRedisTemplate redisTemplate;
+
+    public ScoringService(
+            QuestionCatalog questionCatalog,
+            SseService sseService,
+            StringRedisTemplate redisTemplate) {
+        this.questionCatalog = questionCatalog;
+        this.sseService = sseService;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Grades an answer and adds its points to the scores of its round. A
+     * resubmitted answer replaces the points of the previous one, and an
+     * answer older than the last graded one is ignored, like in the answers
+     * table.
+     *
+     * @param answer the accepted answer
+     * @param round  the round of the answer
+     * @param game   the game of the round
+     */
+    public void grade(Answer answer, Round round, Game game) {
+        redisTemplate.execute(GRADE_SCRIPT,
+                List.of(gradesKey(round.getId()),
+                        roundPlayersKey(round.getId()),
+                        roundTeamsKey(round.getId()),
+                        closedKey(round.getId()),
+                        gamePlayersKey(game.getId()),
+                        gameTeamsKey(game.getId())),
+                answer.getQuestionId() + ":" + answer.getPlayerId(),
+                String.valueOf(answer.getCreatedAt().toEpochMilli()),
+                String.valueOf(points(answer)),
+                answer.getPlayerId().toString(),
+                answer.getTeamId().toString(),
+                String.valueOf(SCORES_TTL.toSeconds()));
+    }
+
+    /**
+     * Takes back the grade of an answer that was accepted but could not be
+     * written, and grades the answer of the player to the question that is
+     * stored instead, if any, so the scores agree with the answers table.
+     * Does nothing when a later answer of the player was graded since.
+     *
+     * @param dropped the answer that could not be written
+     * @param stored  the stored answer of the player to the question, or null
+     * @param round   the round of the answers
+     * @param game    the game of the round
+     */
+    public void reconcile(Answer dropped, Answer stored, Round round, Game game) {
+        // Members are the ones of the dropped answer, whose grade is the one taken back
+        redisTemplate.execute(RECONCILE_SCRIPT,
+                List.of(gradesKey(round.getId()),
+                        roundPlayersKey(round.getId()),
+                        roundTeamsKey(round.getId()),
+                        closedKey(round.getId()),
+                        gamePlayersKey(game.getId()),
+                        gameTeamsKey(game.getId())),
+                dropped.getQuestionId() + ":" + dropped.getPlayerId(),
+                String.valueOf(dropped.getCreatedAt().toEpochMilli()),
+                stored != null ? String.valueOf(stored.getCreatedAt().toEpochMilli()) : "",
+                String.valueOf(stored != null ? points(stored) : 0),
+                dropped.getPlayerId().toString(),
+                dropped.getTeamId().toString());
+    }
+
+    /**
+     * Returns when the last graded answer of a player to a question was
+     * submitted. Every accepted answer is graded before it is queued, so this
+     * tells, on any node, whether the latest answer is written yet.
+     *
+     * @param roundId    the id of the round
+     * @param questionId the id of the question
+     * @param playerId   the id of the player
+     * @return the submission time of the last graded answer, or null if none
+     *         was graded
+     */
+    public Instant getGradedAt(Long roundId, Long questionId, Long playerId) {
+        Object grade = redisTemplate.opsForHash().get(gradesKey(roundId), questionId + ":" + playerId);
+        if (grade == null) {
+            return null;
+        }
+        String value = grade.toString();
+        return Instant.ofEpochMilli(Long.parseLong(value, 0, value.indexOf(':'), 10));
+    }
+
+    /**
+     * Returns whether a round was closed, which happens once it has ended, so
+     * any node can tell that a round has ended without loading it. Tells
+     * nothing about rounds closed longer ago than the scores are kept.
+     *
+     * @param roundId the id of the round
+     * @return true if the round was closed
+     */
+    public boolean isClosed(Long roundId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(closedKey(roundId)));
+    }
+
+    private long points(Answer answer) {
+        QuestionCatalog.Entry question = questionCatalog.get(answer.getQuestionId());
+        return question != null && question.matcher().matches(answer.getAnswer()) ? 1 : 0;
+    }
+
+    /**
+     * Adds the scores of a round to the scores of its game, once whatever the
+     * number of calls and nodes, and publishes the new leaderboard to the room
+     * of the game.
+     *
+     * @param round the round, which has ended
+     * @param game  the game of the round
+     */
+    public void closeRound(Round round, Game game) {
+        Long closed = redisTemplate.execute(CLOSE_SCRIPT,
+                List.of(closedKey(round.getId()),
+                        roundPlayersKey(round.getId()),
+                        roundTeamsKey(round.getId()),
+                        gamePlayersKey(game.getId()),
+                        gameTeamsKey(game.getId())),
+                String.valueOf(SCORES_TTL.toSeconds()));
+
+        if (closed != null && closed == 1) {
+            sseService.publish(game.getRoomId().toString(), "leaderboard-updated",
+                    getLeaderboard(game.getId(), PUBLISHED_LEADERBOARD_SIZE));
+        }
+    }
+
+    /**
+     * Returns the best players and teams of a game, as of the last closed
+     * round.
+     *
+     * @param gameId the id of the game
+     * @param limit  the maximum number of players and of teams
+     * @return the leaderboard, which is empty until a round is closed
+     */
+    public Leaderboard getLeaderboard(Long gameId, int limit) {
+        return new Leaderboard(gameId,
+                top(gamePlayersKey(gameId), limit),
+                top(gameTeamsKey(gameId), limit));
+    }
+
+    private List<Leaderboard.Score> top(String key, int limit) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = redisTemplate.opsForZSet()
+                .reverseRangeWithScores(key, 0, limit - 1);
+
+        List<Leaderboard.Score> scores = new ArrayList<>();
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                scores.add(new Leaderboard.Score(Long.valueOf(tuple.getValue()),
+                        tuple.getScore() != null ? tuple.getScore().longValue() : 0));
+            }
+        }
+        return scores;
+    }
+
+    private static String gradesKey(Long roundId) {
+        return "rounds:" + roundId + ":grades";
+    }
+
+    private static String roundPlayersKey(Long roundId) {
+        return "rounds:" + roundId + ":scores:players";
+    }
+
+    private static String roundTeamsKey(Long roundId) {
+        return "rounds:" + roundId + ":scores:teams";
+    }
+
+    private static String closedKey(Long roundId) {
+        return "rounds:" + roundId + ":closed";
+    }
+
+    private static String gamePlayersKey(Long gameId) {
+        return "games:" + gameId + ":scores:players";
+    }
+
+    private static String gameTeamsKey(Long gameId) {
+        return "games:" + gameId + ":scores:teams";
+    }
+}
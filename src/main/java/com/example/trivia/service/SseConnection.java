@@ -0,0 +1,275 @@
+package com.example.trivia.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * An SSE emitter with a bounded outbound queue that is drained on an
+ * executor, so publishers never block on the socket of a client.
+ */
+public class SseConnection {
+
+    public enum SlowConsumerPolicy {
+        /** Completes the emitter of a client whose queue is full */
+        DISCONNECT,
+        /** Discards the oldest queued event of a client whose queue is full */
+        DROP_OLDEST
+    }
+
+    private record Frame(long eventId, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+    }
+
+    private final SseEmitter emitter;
+    private final int queueCapacity;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final Executor executor;
+    private final Runnable onEvicted;
+    private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new ArrayDeque<>();
+    private final List<Frame> pending = new ArrayList<>();
+    private long lastEventId;
+    private boolean replaying;
+    private boolean draining;
+    private boolean evicted;
+    private long lastSentAt = System.nanoTime();
+
+    public SseConnection(
+            SseEmitter emitter,
+            int queueCapacity,
+            SlowConsumerPolicy slowConsumerPolicy,
+            Executor executor) {
+        this(emitter, queueCapacity, slowConsumerPolicy, executor, () -> {
+        });
+    }
+
+    /**
+     * Creates a connection that runs a callback once if it is evicted.
+     *
+     * @param onEvicted called when the connection is dropped because a send
+     *                  failed, its queue overflowed or it stalled
+     */
+    public SseConnection(
+            SseEmitter emitter,
+            int queueCapacity,
+            SlowConsumerPolicy slowConsumerPolicy,
+            Executor executor,
+            Runnable onEvicted) {
+        this.emitter = emitter;
+        this.queueCapacity = queueCapacity;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.executor = executor;
+        this.onEvicted = onEvicted;
+    }
+
+    public SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    /**
+     * Returns whether the connection was dropped by the server, because a send
+     * failed, its queue overflowed or it stalled, rather than closed normally.
+     */
+    public synchronized boolean isEvicted() {
+        return evicted;
+    }
+
+    /**
+     * Evicts the connection if it has events to send but none was sent within
+     * the timeout, which is how a half-open connection whose writes block
+     * shows up.
+     *
+     * @param timeoutNanos the maximum time without a successful send
+     * @return whether the connection was evicted
+     */
+    public boolean evictIfStalled(long timeoutNanos) {
+        synchronized (this) {
+            if (evicted || !draining || System.nanoTime() - lastSentAt < timeoutNanos) {
+                return false;
+            }
+            evicted = true;
+            queue.clear();
+        }
+
+        onEvicted.run();
+        emitter.complete();
+        return true;
+    }
+
+    /**
+     * Queues an encoded event without an id.
+     *
+     * @param event the encoded event to send
+     * @see #enqueue(long, Set)
+     */
+    public void enqueue(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        enqueue(0, event);
+    }
+
+    /**
+     * Queues an encoded event and schedules a drain if none is running. Never
+     * blocks on the network. The event is only read, so the same instance can
+     * be queued on every connection of a topic.
+     *
+     * Events with an id that is not greater than the id of the last queued
+     * event are skipped, which happens when a live event was already replayed.
+     *
+     * @param eventId the id of the event, or 0 if it has none
+     * @param event   the encoded event to send
+     */
+    public void enqueue(long eventId, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        boolean startDrain;
+        boolean disconnect;
+        synchronized (this) {
+            if (evicted) {
+                return;
+            }
+
+            if (replaying) {
+                pending.add(new Frame(eventId, event));
+                return;
+            }
+
+            startDrain = offer(eventId, event);
+            disconnect = evicted;
+        }
+
+        schedule(startDrain, disconnect);
+    }
+
+    /**
+     * Holds live events back until {@link #finishReplay()}, so the events that
+     * are replayed from the buffer are sent first.
+     */
+    public synchronized void startReplay() {
+        replaying = true;
+    }
+
+    /**
+     * Queues an event replayed from the buffer while live events are held
+     * back.
+     *
+     * @param eventId the id of the event
+     * @param event   the encoded event to send
+     */
+    public void replay(long eventId, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        boolean startDrain;
+        boolean disconnect;
+        synchronized (this) {
+            if (evicted) {
+                return;
+            }
+
+            startDrain = offer(eventId, event);
+            disconnect = evicted;
+        }
+
+        schedule(startDrain, disconnect);
+    }
+
+    /**
+     * Queues the live events that arrived during the replay, skipping the ones
+     * that were already replayed.
+     */
+    public void finishReplay() {
+        boolean startDrain = false;
+        boolean disconnect;
+        synchronized (this) {
+            replaying = false;
+            if (evicted) {
+                pending.clear();
+                return;
+            }
+
+            for (Frame frame : pending) {
+                startDrain |= offer(frame.eventId(), frame.event());
+            }
+            pending.clear();
+            disconnect = evicted;
+        }
+
+        schedule(startDrain, disconnect);
+    }
+
+    /**
+     * Adds an event to the queue, applying the slow consumer policy when the
+     * queue is full. Must be called while holding the lock.
+     *
+     * @return whether a drain has to be started
+     */
+    private boolean offer(long eventId, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        if (evicted || (eventId > 0 && eventId <= lastEventId)) {
+            return false;
+        }
+
+        if (eventId > 0) {
+            lastEventId = eventId;
+        }
+
+        if (queue.size() >= queueCapacity) {
+            if (slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+                evicted = true;
+                queue.clear();
+                return false;
+            }
+            queue.poll();
+        }
+
+        queue.add(event);
+        if (draining) {
+            return false;
+        }
+        draining = true;
+        lastSentAt = System.nanoTime();
+        return true;
+    }
+
+    private void schedule(boolean startDrain, boolean disconnect) {
+        if (disconnect) {
+            onEvicted.run();
+            emitter.complete();
+        } else if (startDrain) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Set<ResponseBodyEmitter.DataWithMediaType> event;
+            synchronized (this) {
+                event = evicted ? null : queue.poll();
+                if (event == null) {
+                    draining = false;
+                    return;
+                }
+            }
+
+            try {
+                emitter.send(event);
+                synchronized (this) {
+                    lastSentAt = System.nanoTime();
+                }
+            } catch (IOException | IllegalStateException e) {
+                boolean alreadyEvicted;
+                synchronized (this) {
+                    // A stalled send can fail after the heartbeat evicted the connection
+                    alreadyEvicted = evicted;
+                    evicted = true;
+                    queue.clear();
+                    draining = false;
+                }
+                if (!alreadyEvicted) {
+                    onEvicted.run();
+                }
+                emitter.completeWithError(e);
+                return;
+            }
+        }
+    }
+}
@@ -1,94 +1,403 @@
 package com.example.trivia.service;
 
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import jakarta.annotation.PreDestroy;
+
+import tools.jackson.databind.json.JsonMapper;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Service
-public class SseService {
+public class SseService implements MeterBinder {
 
+    private static final Log logger = LogFactory.getLog(SseService.class);
     private static final long SSE_TIMEOUT = 60 * 60 * 1000;
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> CONNECTED = encode(0, "message", "Connected");
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> PING = Set.of(
+            new ResponseBodyEmitter.DataWithMediaType(":ping\n\n".getBytes(StandardCharsets.UTF_8),
+                    MediaType.TEXT_EVENT_STREAM));
+    private static final Duration REPLAY_TTL = Duration.ofDays(1);
+    // Sent instead of the missed events when they are no longer buffered, with the id of the last event as data
+    private static final String RESYNC_EVENT = "resync";
+    // Set once per Redis dataset, so the versions of topics never repeat even if Redis loses the ids
+    private static final String EPOCH_KEY = "sse:epoch";
+    private static final long VERSION_BUMP_INTERVAL_SECONDS = 1;
+    // Assigns the next id of the topic and appends the message to its replay buffer before publishing it, all
+    // atomically, so ids are in the same order in the buffer and in the channel. Only the buffer expires, since
+    // ids must keep increasing however long a topic is quiet.
+    private static final RedisScript<Long> PUBLISH_SCRIPT = RedisScript.of("""
+            local id = redis.call('INCR', KEYS[1])
+            local message = id .. '\\n' .. ARGV[1]
+            redis.call('RPUSH', KEYS[2], message)
+            redis.call('LTRIM', KEYS[2], -tonumber(ARGV[2]), -1)
+            redis.call('EXPIRE', KEYS[2], ARGV[3])
+            redis.call('PUBLISH', ARGV[4], message)
+            return id
+            """, Long.class);
+    private final JsonMapper jsonMapper;
     private final RedisMessageListenerContainer redisMessageListenerContainer;
-    private final Map<String, Set<SseEmitter>> topicEmitters = new ConcurrentHashMap<>();
-    private final Map<String, MessageListener> topicListeners = new ConcurrentHashMap<>();
-    private final Object lock = new Object();
+    private final StringRedisTemplate redisTemplate;
+    private final int queueCapacity;
+    private final SseConnection.SlowConsumerPolicy slowConsumerPolicy;
+    private final int replayBufferSize;
+    // Sends run on virtual threads so a slow client never blocks the thread that publishes
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("sse-heartbeat").daemon().factory());
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final AtomicLong evictedConnections = new AtomicLong();
+    // Topics that an event failed to be published to, whose ids must be bumped once Redis is back
+    private final Set<String> unpublishedTopics = ConcurrentHashMap.newKeySet();
 
-    public SseService(RedisMessageListenerContainer redisMessageListenerContainer) {
+    /**
+     * The connections of a topic on this node and the Redis listener that is
+     * registered while the topic has at least one connection.
+     */
+    private record Topic(Set<SseConnection> connections, MessageListener listener) {
+    }
+
+    /**
+     * A message of a topic channel or replay buffer, which is the id, the
+     * event name and the JSON data separated by newlines.
+     */
+    private record Message(long id, String event, String data) {
+        static Message parse(String message) {
+            int first = message.indexOf('\n');
+            int second = message.indexOf('\n', first + 1);
+            return new Message(
+                    Long.parseLong(message, 0, first, 10),
+                    message.substring(first + 1, second),
+                    message.substring(second + 1));
+        }
+    }
+
+    public SseService(
+            JsonMapper jsonMapper,
+            RedisMessageListenerContainer redisMessageListenerContainer,
+            StringRedisTemplate redisTemplate,
+            @Value("${sse.queue-capacity}") int queueCapacity,
+            @Value("${sse.slow-consumer-policy}") SseConnection.SlowConsumerPolicy slowConsumerPolicy,
+            @Value("${sse.replay-buffer-size}") int replayBufferSize,
+            @Value("${sse.heartbeat-interval-seconds}") long heartbeatIntervalSeconds,
+            @Value("${sse.stall-timeout-seconds}") long stallTimeoutSeconds) {
+        this.jsonMapper = jsonMapper;
         this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.redisTemplate = redisTemplate;
+        this.queueCapacity = queueCapacity;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.replayBufferSize = replayBufferSize;
+
+        long stallTimeoutNanos = TimeUnit.SECONDS.toNanos(stallTimeoutSeconds);
+        heartbeat.scheduleAtFixedRate(() -> sendHeartbeat(stallTimeoutNanos),
+                heartbeatIntervalSeconds, heartbeatIntervalSeconds, TimeUnit.SECONDS);
+        heartbeat.scheduleWithFixedDelay(this::bumpUnpublishedTopics,
+                VERSION_BUMP_INTERVAL_SECONDS, VERSION_BUMP_INTERVAL_SECONDS, TimeUnit.SECONDS);
     }
 
-    public SseEmitter subscribe(String topic) {
+    /**
+     * Subscribes to the events of a topic.
+     *
+     * When the client sends the id of the last event it received, the events
+     * after it that are still in the replay buffer of the topic are sent
+     * before any live event, so a reconnecting client can catch up without
+     * fetching the whole state again. When some of those events are no longer
+     * buffered, a resync event is sent instead, telling the client to fetch
+     * the whole state again.
+     *
+     * @param topic       the topic to subscribe to
+     * @param lastEventId the id of the last event the client received, or null
+     * @return the emitter of the subscription
+     */
+    public SseEmitter subscribe(String topic, Long lastEventId) {
         SseEmitter emitter = new SseEmitter(SSE_TIMEOUT);
+        SseConnection connection = new SseConnection(emitter, queueCapacity, slowConsumerPolicy, dispatcher,
+                evictedConnections::incrementAndGet);
+        connection.enqueue(CONNECTED);
+        if (lastEventId != null) {
+            connection.startReplay();
+        }
 
-        synchronized (lock) {
-            Set<SseEmitter> emitters = topicEmitters.computeIfAbsent(topic, k -> new CopyOnWriteArraySet<>());
-            boolean isFirstSubscriber = emitters.isEmpty();
-            emitters.add(emitter);
-            if (isFirstSubscriber) {
-                MessageListener listener = (message, pattern) -> {
-                    String messageBody = new String(message.getBody());
-                    publish(topic, "message", messageBody);
-                };
-                topicListeners.put(topic, listener);
-                redisMessageListenerContainer.addMessageListener(listener, new ChannelTopic(topic));
+        // Subscribing and removing only lock the map entry of their own topic, so connection churn in one
+        // room never waits on another room, while the listener is still added and removed exactly once
+        topics.compute(topic, (key, current) -> {
+            Topic entry = current;
+            if (entry == null) {
+                entry = new Topic(ConcurrentHashMap.newKeySet(), createListener(key));
+                redisMessageListenerContainer.addMessageListener(entry.listener(), new ChannelTopic(key));
             }
-        }
+            entry.connections().add(connection);
+            return entry;
+        });
 
-        emitter.onCompletion(() -> remove(topic, emitter));
-        emitter.onTimeout(() -> remove(topic, emitter));
-        emitter.onError((e) -> remove(topic, emitter));
+        emitter.onCompletion(() -> remove(topic, connection));
+        emitter.onTimeout(() -> remove(topic, connection));
+        emitter.onError((e) -> remove(topic, connection));
 
-        try {
-            emitter.send(SseEmitter.event().name("message").data("Connected"));
-        } catch (IOException e) {
-            remove(topic, emitter);
+        if (lastEventId != null) {
+            // Live events that arrive while the buffer is read are held back and deduplicated by id
+            try {
+                replay(topic, lastEventId, connection);
+            } finally {
+                connection.finishReplay();
+            }
         }
 
         return emitter;
     }
 
-    public void publish(String topic, String event, Object data) {
-        Set<SseEmitter> emitters = topicEmitters.get(topic);
-        if (emitters == null || emitters.isEmpty()) {
+    private void replay(String topic, long lastEventId, SseConnection connection) {
+        // The id is read before the buffer, so an event published in between is found in the buffer
+        long lastPublishedId = getLastEventId(topic);
+        List<String> messages = redisTemplate.opsForList().range(eventsKey(topic), 0, -1);
+        List<Message> buffered = new ArrayList<>();
+        for (String message : messages != null ? messages : List.<String>of()) {
+            buffered.add(Message.parse(message));
+        }
+
+        // Events were trimmed or expired from the buffer, or failed to be published, since the last event of the
+        // client, or the client's ids are from before Redis lost them
+        long firstBufferedId = buffered.isEmpty() ? lastPublishedId + 1 : buffered.getFirst().id();
+        if (firstBufferedId > lastEventId + 1 || lastEventId > lastPublishedId) {
+            long resyncId = buffered.isEmpty() ? lastPublishedId : Math.max(lastPublishedId, buffered.getLast().id());
+            connection.replay(resyncId, encode(resyncId, RESYNC_EVENT, String.valueOf(resyncId)));
             return;
         }
 
-        Set<SseEmitter> deadEmitters = new CopyOnWriteArraySet<>();
+        for (Message message : buffered) {
+            if (message.id() > lastEventId) {
+                connection.replay(message.id(), encode(message.id(), message.event(), message.data()));
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the last event published to a topic, which increases
+     * with every event and can be used as the version of the topic.
+     *
+     * @param topic the topic
+     * @return the id of the last event, or 0 if no event was published
+     */
+    public long getLastEventId(String topic) {
+        String id = redisTemplate.opsForValue().get(eventIdKey(topic));
+        return id != null ? Long.parseLong(id) : 0;
+    }
+
+    /**
+     * Returns the version of a topic, which changes with every event, made of
+     * the id of its last event and the epoch of the Redis dataset, so it never
+     * repeats even if Redis loses its data and ids start over.
+     *
+     * @param topic the topic
+     * @return the version, or null while an event of the topic that failed to
+     *         be published on this node has not bumped it yet
+     */
+    public String getVersion(String topic) {
+        if (unpublishedTopics.contains(topic)) {
+            return null;
+        }
+
+        List<String> values = redisTemplate.opsForValue().multiGet(List.of(EPOCH_KEY, eventIdKey(topic)));
+        String epoch = values != null ? values.get(0) : null;
+        if (epoch == null) {
+            redisTemplate.opsForValue().setIfAbsent(EPOCH_KEY, String.valueOf(System.currentTimeMillis()));
+            epoch = redisTemplate.opsForValue().get(EPOCH_KEY);
+        }
+        String id = values != null ? values.get(1) : null;
+        return epoch + "-" + (id != null ? id : "0");
+    }
+
+    /**
+     * Deletes the event ids and replay buffer of a topic that will never be
+     * published to again, such as the topic of a deleted room.
+     *
+     * @param topic the topic
+     */
+    public void deleteTopic(String topic) {
+        redisTemplate.delete(List.of(eventIdKey(topic), eventsKey(topic)));
+    }
+
+    /**
+     * Returns the number of connections open on this node.
+     */
+    public int getLiveConnectionCount() {
+        int count = 0;
+        for (Topic entry : topics.values()) {
+            count += entry.connections().size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of connections this node dropped since it started,
+     * because a send failed, a queue overflowed or a connection stalled.
+     */
+    public long getEvictedConnectionCount() {
+        return evictedConnections.get();
+    }
+
+    /**
+     * Exposes the live and evicted connection counts of this node as the
+     * sse.connections.live gauge and the sse.connections.evicted counter.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("sse.connections.live", this, SseService::getLiveConnectionCount)
+                .description("Connections open on this node")
+                .register(registry);
+        FunctionCounter.builder("sse.connections.evicted", evictedConnections, AtomicLong::get)
+                .description("Connections dropped because a send failed, a queue overflowed or a connection stalled")
+                .register(registry);
+    }
 
-        for (SseEmitter emitter : emitters) {
+    /**
+     * Publishes an event to the subscribers of a topic on every node.
+     *
+     * The data is serialized to JSON once and sent to the Redis channel of the
+     * topic together with the event name and the next id of the topic, which
+     * is also appended to the replay buffer of the topic. Delivery to the
+     * emitters happens in the listener of each node, never here, so the
+     * publishing node does not deliver the event twice.
+     *
+     * Events are published after the change they announce is committed, so a
+     * failure to publish is not thrown. The version of the topic is bumped
+     * instead once Redis is back, so clients do not keep the data from before
+     * the change.
+     *
+     * @param topic the topic to publish to
+     * @param event the name of the event
+     * @param data  the data of the event, serialized as JSON
+     * @return the id of the event, or 0 if it could not be published
+     */
+    public long publish(String topic, String event, Object data) {
+        String message = event + "\n" + jsonMapper.writeValueAsString(data);
+        try {
+            Long id = redisTemplate.execute(PUBLISH_SCRIPT, List.of(eventIdKey(topic), eventsKey(topic)),
+                    message, String.valueOf(replayBufferSize), String.valueOf(REPLAY_TTL.toSeconds()), topic);
+            return id != null ? id : 0;
+        } catch (DataAccessException e) {
+            unpublishedTopics.add(topic);
+            logger.error("Could not publish " + event + " to topic " + topic + ", bumping its version later", e);
+            return 0;
+        }
+    }
+
+    private void bumpUnpublishedTopics() {
+        for (String topic : unpublishedTopics) {
+            // Removed first, so an event that fails to be published during the bump gets a bump of its own
+            unpublishedTopics.remove(topic);
             try {
-                emitter.send(SseEmitter.event()
-                        .name(event)
-                        .data(data));
-            } catch (IOException e) {
-                deadEmitters.add(emitter);
+                redisTemplate.opsForValue().increment(eventIdKey(topic));
+            } catch (RuntimeException e) {
+                unpublishedTopics.add(topic);
+                logger.warn("Could not bump the version of topic " + topic + ", retrying", e);
+                return;
             }
         }
+    }
 
-        deadEmitters.forEach(emitter -> remove(topic, emitter));
+    private MessageListener createListener(String topic) {
+        // Every node listens on the topic channel once and only delivers to its own emitters, so an event
+        // published by any node reaches each subscriber exactly once
+        return (message, pattern) -> deliver(topic,
+                Message.parse(new String(message.getBody(), StandardCharsets.UTF_8)));
     }
 
-    private void remove(String topic, SseEmitter emitter) {
-        synchronized (lock) {
-            Set<SseEmitter> emitters = topicEmitters.get(topic);
-            if (emitters != null) {
-                emitters.remove(emitter);
-                if (emitters.isEmpty()) {
-                    topicEmitters.remove(topic);
-                    MessageListener listener = topicListeners.remove(topic);
-                    if (listener != null) {
-                        redisMessageListenerContainer.removeMessageListener(listener);
-                    }
+    private void deliver(String topic, Message message) {
+        Topic entry = topics.get(topic);
+        if (entry == null) {
+            return;
+        }
+
+        // The frame is encoded once and the same bytes are written to every connection. Connections
+        // that fail to send complete their emitter, which removes them from the topic.
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = encode(message.id(), message.event(), message.data());
+        for (SseConnection connection : entry.connections()) {
+            connection.enqueue(message.id(), frame);
+        }
+    }
+
+    /**
+     * Encodes an event as a complete SSE frame, ready to be written as is by
+     * the byte array message converter.
+     *
+     * @param id    the id of the event, or 0 if it has none
+     * @param event the name of the event
+     * @param data  the data of the event, which must not contain newlines
+     * @return the frame as a single UTF-8 encoded item
+     */
+    static Set<ResponseBodyEmitter.DataWithMediaType> encode(long id, String event, String data) {
+        String frame = (id > 0 ? "id:" + id + "\n" : "") + "event:" + event + "\ndata:" + data + "\n\n";
+        byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+        return Set.of(new ResponseBodyEmitter.DataWithMediaType(bytes, MediaType.TEXT_EVENT_STREAM));
+    }
+
+    /**
+     * Pings every connection with an SSE comment, so dead connections fail to
+     * send and are dropped without waiting for a room event, and evicts the
+     * connections whose sends have stalled.
+     */
+    private void sendHeartbeat(long stallTimeoutNanos) {
+        for (Topic entry : topics.values()) {
+            for (SseConnection connection : entry.connections()) {
+                if (!connection.evictIfStalled(stallTimeoutNanos)) {
+                    connection.enqueue(PING);
                 }
             }
         }
     }
+
+    private static String eventIdKey(String topic) {
+        return "sse:" + topic + ":event-id";
+    }
+
+    private static String eventsKey(String topic) {
+        return "sse:" + topic + ":events";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    private void remove(String topic, SseConnection connection) {
+        topics.computeIfPresent(topic, (key, entry) -> {
+            entry.connections().remove(connection);
+            if (entry.connections().isEmpty()) {
+                redisMessageListenerContainer.removeMessageListener(entry.listener());
+                return null;
+            }
+            return entry;
+        });
+    }
 }
@@ -0,0 +1,92 @@
+package com.example.trivia.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * The position of the last item of a page in an ordering by descending
+ * creation time and id, which is where the next page starts. Clients get it
+ * as an opaque string in the next link of a page.
+ */
+public record Cursor(Instant createdAt, Long id) {
+
+    /**
+     * Encodes the cursor as an opaque string that is safe in a query.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "," + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor encoded by {@link #encode()}.
+     *
+     * @param cursor the encoded cursor
+     * @return the cursor
+     * @throws ResponseStatusException with status 400 if the cursor is invalid
+     */
+    public static Cursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(',');
+            return new Cursor(Instant.parse(decoded.substring(0, separator)),
+                    Long.valueOf(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    /**
+     * Responds with a page of items from newest to oldest starting after a
+     * cursor, or the first page for an empty cursor, with a Link header to the
+     * next and first pages. The items are never counted.
+     *
+     * @param cursor   the encoded cursor of the page, or empty for the first
+     * @param size     the number of items per page, between 1 and 100
+     * @param uri      the URL of the endpoint without cursor and size
+     * @param fetch    fetches at most the given number of items after a
+     *                 cursor, or from the newest for a null cursor
+     * @param cursorOf the cursor of an item
+     * @return the response with the items of the page
+     * @throws ResponseStatusException with status 400 if the size or the
+     *                                 cursor is invalid
+     */
+    public static <T> ResponseEntity<List<T>> respondWithPage(
+            String cursor,
+            int size,
+            UriComponentsBuilder uri,
+            BiFunction<Cursor, Integer, List<T>> fetch,
+            Function<T, Cursor> cursorOf) {
+        if (size < 1 || size > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size must be between 1 and 100");
+        }
+
+        // One more item than the page size tells whether there is a next page
+        List<T> items = fetch.apply(cursor.isEmpty() ? null : decode(cursor), size + 1);
+
+        String nextCursor = null;
+        if (items.size() > size) {
+            items = items.subList(0, size);
+            nextCursor = cursorOf.apply(items.getLast()).encode();
+        }
+
+        String url = uri.replaceQueryParam("cursor", cursor)
+                .replaceQueryParam("size", size)
+                .toUriString();
+
+        String linkHeader = LinkHeaderBuilder.buildWithCursorLinks(nextCursor, size, url);
+        return ResponseEntity.ok().header("Link", linkHeader).body(items);
+    }
+}
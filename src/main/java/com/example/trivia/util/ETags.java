@@ -0,0 +1,32 @@
+package com.example.trivia.util;
+
+public class ETags {
+
+    /**
+     * Returns whether an If-None-Match header matches an entity tag, using
+     * the weak comparison that RFC 9110 requires for If-None-Match.
+     *
+     * @param ifNoneMatch the If-None-Match header, or null if absent
+     * @param etag        the current entity tag of the resource, or null if
+     *                    it is unknown
+     * @return true if the client already has the current representation
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+
+        String opaqueTag = stripWeakPrefix(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.strip();
+            if (tag.equals("*") || stripWeakPrefix(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeakPrefix(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -54,4 +54,40 @@ public class LinkHeaderBuilder {
 
         return linkHeader.toString();
     }
+
+    /**
+     * Generates a Link HTTP header string for cursor pagination with self,
+     * next and first links. There is no last link, so the total number of
+     * items never needs to be counted.
+     *
+     * @param nextCursor the cursor of the next page, or null on the last page
+     * @param size       the number of items per page
+     * @param uri        the base URL for the endpoint
+     * @return a Link header string with cursor and size query parameters
+     */
+    public static String buildWithCursorLinks(String nextCursor, int size, String uri) {
+        StringBuilder linkHeader = new StringBuilder();
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(uri != null ? uri : "/");
+
+        String selfLink = builder.replaceQueryParam("size", size)
+                .build()
+                .toUriString();
+        linkHeader.append(String.format("<%s>; rel=\"self\"", selfLink));
+
+        if (nextCursor != null) {
+            String nextLink = builder.replaceQueryParam("cursor", nextCursor)
+                    .replaceQueryParam("size", size)
+                    .build()
+                    .toUriString();
+            linkHeader.append(", ").append(String.format("<%s>; rel=\"next\"", nextLink));
+        }
+
+        String firstLink = builder.replaceQueryParam("cursor", "")
+                .replaceQueryParam("size", size)
+                .build()
+                .toUriString();
+        linkHeader.append(", ").append(String.format("<%s>; rel=\"first\"", firstLink));
+
+        return linkHeader.toString();
+    }
 }
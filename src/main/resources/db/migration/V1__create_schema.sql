@@ -60,6 +60,7 @@ CREATE TABLE answers (
     team_id BIGINT NOT NULL, -- No FK constraint
     created_at TIMESTAMP WITH TIME ZONE NOT NULL,
     answer TEXT NOT NULL,
+    UNIQUE (round_id, question_id, player_id),
     FOREIGN KEY (round_id, question_id) REFERENCES round_questions (round_id, question_id)
         ON DELETE CASCADE
 );
@@ -0,0 +1,21 @@
+-- Answers are looked up by round, by round and question, and by round, question
+-- and player, which are all prefixes of UNIQUE (round_id, question_id, player_id).
+-- V1 creates that key, but databases baselined from the initdb scripts only get
+-- it in V6. Round questions are looked up by round, which is a prefix of their
+-- primary key.
+
+CREATE INDEX players_room_id_idx ON players (room_id);
+CREATE INDEX players_team_id_idx ON players (team_id) WHERE team_id IS NOT NULL;
+
+CREATE INDEX teams_room_id_idx ON teams (room_id);
+
+CREATE INDEX games_room_id_idx ON games (room_id);
+
+CREATE INDEX rounds_game_id_idx ON rounds (game_id);
+
+-- Public rooms are the ones without a code
+CREATE INDEX rooms_public_idx ON rooms (id) WHERE code IS NULL;
+
+-- Deleting a player or a game clears the rooms that reference it
+CREATE INDEX rooms_host_id_idx ON rooms (host_id) WHERE host_id IS NOT NULL;
+CREATE INDEX rooms_game_id_idx ON rooms (game_id) WHERE game_id IS NOT NULL;
@@ -0,0 +1,11 @@
+-- Cursor pages are ordered by descending creation time and id, and start
+-- right after the last item of the previous page, so they read an index range
+-- however deep they are
+
+CREATE INDEX games_created_at_id_idx ON games (created_at, id);
+
+DROP INDEX games_room_id_idx;
+CREATE INDEX games_room_id_created_at_id_idx ON games (room_id, created_at, id);
+
+DROP INDEX rooms_public_idx;
+CREATE INDEX rooms_public_created_at_id_idx ON rooms (created_at, id) WHERE code IS NULL;
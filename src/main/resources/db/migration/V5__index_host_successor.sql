@@ -0,0 +1,4 @@
+-- The successor of a host who leaves is the player of the room who joined
+-- first, which is the first entry of the room in this index
+DROP INDEX players_room_id_idx;
+CREATE INDEX players_room_id_id_idx ON players (room_id, id);
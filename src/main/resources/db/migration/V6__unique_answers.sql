@@ -0,0 +1,31 @@
+-- Answers are upserted on (round_id, question_id, player_id). Databases
+-- created by V1 already have that unique key, but databases baselined at
+-- version 2 from the initdb scripts may not, and may hold several answers of
+-- a player to the same question. The latest of them is kept, as the upsert
+-- would have done, before the key is added.
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_constraint constraints
+        WHERE constraints.conrelid = 'answers'::regclass
+            AND constraints.contype IN ('p', 'u')
+            AND (
+                SELECT array_agg(attributes.attname::TEXT ORDER BY attributes.attname)
+                FROM pg_attribute attributes
+                WHERE attributes.attrelid = constraints.conrelid
+                    AND attributes.attnum = ANY (constraints.conkey)
+            ) = ARRAY['player_id', 'question_id', 'round_id']
+    ) THEN
+        DELETE FROM answers older
+        USING answers newer
+        WHERE older.round_id = newer.round_id
+            AND older.question_id = newer.question_id
+            AND older.player_id = newer.player_id
+            AND (older.created_at, older.id) < (newer.created_at, newer.id);
+
+        ALTER TABLE answers
+            ADD CONSTRAINT answers_round_id_question_id_player_id_key UNIQUE (round_id, question_id, player_id);
+    END IF;
+END
+$$;
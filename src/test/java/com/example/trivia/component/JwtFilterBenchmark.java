@@ -0,0 +1,98 @@
+package com.example.trivia.component;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.FilterChain;
+
+import io.jsonwebtoken.Jwts;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.trivia.service.PlayerTokenService;
+
+/**
+ * Measures what {@link JwtFilter} adds to a request, for a token it has
+ * cached (warm) and for tokens it has to verify and cache into a full cache
+ * (cold).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET = "xHMaro8aNn82Lo2y5zyiBmOz2NuHyXtauex28293dXY=";
+
+    private static final FilterChain CHAIN = (request, response) -> {
+    };
+
+    @Param({ "1000", "10000" })
+    public int cacheSize;
+
+    private JwtFilter jwtFilter;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        JwtKeyLocator jwtKeyLocator = new JwtKeyLocator(SECRET);
+        // The tokens carry no room, so their membership is never looked up in Redis
+        PlayerTokenService playerTokenService = new PlayerTokenService(jwtKeyLocator, null, null,
+                new RedisMessageListenerContainer());
+        jwtFilter = new JwtFilter(jwtKeyLocator, playerTokenService, cacheSize);
+
+        // Twice as many tokens as the cache holds, so each one is evicted before it comes round again
+        tokens = new String[cacheSize * 2];
+        Date expiration = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = Jwts.builder()
+                    .subject(String.valueOf(i + 1))
+                    .expiration(expiration)
+                    .signWith(jwtKeyLocator.locate(null))
+                    .compact();
+        }
+
+        // Fill the cache, so the cold requests evict a token for every one they cache
+        for (int i = 0; i < cacheSize; i++) {
+            filter(tokens[i]);
+        }
+        next = cacheSize;
+    }
+
+    private Object filter(String jwt) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + jwt);
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), CHAIN);
+        return request.getAttribute("playerId");
+    }
+
+    @Benchmark
+    public Object cold() throws Exception {
+        String jwt = tokens[next];
+        next = (next + 1) % tokens.length;
+        return filter(jwt);
+    }
+
+    @Benchmark
+    public Object warm() throws Exception {
+        return filter(tokens[0]);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.trivia.component;
+
+import com.example.trivia.dto.PlayerMembership;
+import com.example.trivia.service.PlayerTokenService;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JwtFilterTest {
+    private static final String SECRET = "xHMaro8aNn82Lo2y5zyiBmOz2NuHyXtauex28293dXY=";
+
+    private JwtKeyLocator jwtKeyLocator;
+    private PlayerTokenService playerTokenService;
+    private JwtFilter jwtFilter;
+
+    @BeforeEach
+    void setUp() {
+        jwtKeyLocator = new JwtKeyLocator(SECRET);
+        playerTokenService = mock(PlayerTokenService.class);
+        jwtFilter = new JwtFilter(jwtKeyLocator, playerTokenService, 2);
+    }
+
+    private String token(String subject, long expiresInMillis) {
+        return Jwts.builder()
+                .subject(subject)
+                .expiration(new Date(System.currentTimeMillis() + expiresInMillis))
+                .signWith(jwtKeyLocator.locate(null))
+                .compact();
+    }
+
+    private MockHttpServletRequest filter(String jwt, MockHttpServletResponse response) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + jwt);
+        jwtFilter.doFilter(request, response, new MockFilterChain());
+        return request;
+    }
+
+    @Test
+    void doFilter_setsPlayerIdOnEveryRequestWithTheSameToken() throws Exception {
+        String jwt = token("1", 60_000);
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockHttpServletRequest request = filter(jwt, response);
+
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertEquals(1L, request.getAttribute("playerId"));
+        }
+    }
+
+    @Test
+    void doFilter_rejectsTamperedTokenWithCachedSignature() throws Exception {
+        String jwt = token("1", 60_000);
+        filter(jwt, new MockHttpServletResponse());
+
+        String[] parts = jwt.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                .replace("\"sub\":\"1\"", "\"sub\":\"2\"");
+        String forged = parts[0] + "."
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + "." + parts[2];
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = filter(forged, response);
+
+        assertEquals(HttpStatus.UNAUTHORIZED.value(), response.getStatus());
+        assertNull(request.getAttribute("playerId"));
+    }
+
+    @Test
+    void doFilter_rejectsExpiredToken() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter(token("1", -1_000), response);
+
+        assertEquals(HttpStatus.UNAUTHORIZED.value(), response.getStatus());
+    }
+
+    @Test
+    void doFilter_verifiesTokensBeyondTheCacheSize() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockHttpServletRequest request = filter(token(String.valueOf(i), 60_000), response);
+
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertEquals((long) i, request.getAttribute("playerId"));
+        }
+        assertEquals(2, jwtFilter.getCachedTokenCount());
+    }
+
+    @Test
+    void doFilter_evictsOldestTokenWhenCacheIsFull() throws Exception {
+        String first = token("1", 60_000);
+        String second = token("2", 60_000);
+        filter(first, new MockHttpServletResponse());
+        filter(second, new MockHttpServletResponse());
+
+        // The newest token is cached in place of the oldest one, even though neither expired
+        filter(token("3", 60_000), new MockHttpServletResponse());
+        assertEquals(2, jwtFilter.getCachedTokenCount());
+
+        // The evicted token is verified again
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = filter(first, response);
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals(1L, request.getAttribute("playerId"));
+    }
+
+    @Test
+    void doFilter_setsMembershipWhenTokenIsCurrent() throws Exception {
+        PlayerMembership membership = new PlayerMembership(1L, 1L, 2L);
+        when(playerTokenService.getMembership(any(Claims.class))).thenReturn(membership);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = filter(token("1", 60_000), response);
+
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals(membership, request.getAttribute("membership"));
+    }
+
+    @Test
+    void doFilter_omitsMembershipWhenTokenIsStale() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = filter(token("1", 60_000), response);
+
+        assertEquals(1L, request.getAttribute("playerId"));
+        assertNull(request.getAttribute("membership"));
+    }
+}
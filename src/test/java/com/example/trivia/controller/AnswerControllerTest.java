@@ -1,16 +1,19 @@
 package com.example.trivia.controller;
 
 import com.example.trivia.dto.AnswerSubmissionRequest;
+import com.example.trivia.dto.PlayerMembership;
 import com.example.trivia.model.Answer;
 import com.example.trivia.model.Game;
 import com.example.trivia.model.Player;
 import com.example.trivia.model.Question;
 import com.example.trivia.model.Round;
 import com.example.trivia.repository.AnswerRepository;
-import com.example.trivia.repository.GameRepository;
 import com.example.trivia.repository.PlayerRepository;
-import com.example.trivia.repository.QuestionRepository;
 import com.example.trivia.repository.RoundRepository;
+import com.example.trivia.service.ActiveRoundCache;
+import com.example.trivia.service.AnswerWriter;
+import com.example.trivia.service.RoundResultsCache;
+import com.example.trivia.service.ScoringService;
 import com.example.trivia.service.SseService;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,39 +22,51 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AnswerControllerTest {
+    @Mock
+    private ActiveRoundCache activeRoundCache;
+
     @Mock
     private AnswerRepository answerRepo;
 
     @Mock
-    private GameRepository gameRepo;
+    private AnswerWriter answerWriter;
 
     @Mock
     private PlayerRepository playerRepo;
 
     @Mock
-    private QuestionRepository questionRepo;
+    private RoundRepository roundRepo;
 
     @Mock
-    private RoundRepository roundRepo;
+    private RoundResultsCache roundResultsCache;
+
+    @Mock
+    private ScoringService scoringService;
 
     @Mock
     private SseService sseService;
@@ -98,26 +113,52 @@ class AnswerControllerTest {
         testAnswer.setAnswer("my answer");
     }
 
+    private RoundResultsCache.Results results(Map<Long, byte[]> answers) {
+        return new RoundResultsCache.Results(testRound, new byte[0], answers, Instant.now().plusSeconds(60));
+    }
+
+    private Optional<ActiveRoundCache.ActiveRound> activeRound() {
+        return Optional.of(new ActiveRoundCache.ActiveRound(testRound, testGame, Map.of(1L, testPlayer)));
+    }
+
     @Test
-    void submitAnswer_submitsAnswerAndReturns200() {
-        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
+    void submitAnswer_acceptsAnswerAndReturns202() {
+        when(activeRoundCache.get(1L)).thenReturn(activeRound());
         when(request.getAttribute("playerId")).thenReturn(1L);
-        when(playerRepo.findById(1L)).thenReturn(Optional.of(testPlayer));
-        when(gameRepo.findById(1L)).thenReturn(Optional.of(testGame));
-        when(answerRepo.findByRoundIdAndQuestionIdAndPlayerId(1L, 1L, 1L)).thenReturn(Optional.empty());
-        when(answerRepo.save(any(Answer.class))).thenReturn(testAnswer);
 
         ResponseEntity<Answer> response = answerController.submitAnswer(
                 1L, 1L, new AnswerSubmissionRequest("my answer"), request);
 
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(testAnswer, response.getBody());
-        verify(answerRepo).save(any(Answer.class));
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("my answer", response.getBody().getAnswer());
+        assertEquals(1L, response.getBody().getTeamId());
+        verify(answerWriter).submit(eq(response.getBody()), any());
+        verify(scoringService).grade(response.getBody(), testRound, testGame);
+        verifyNoInteractions(answerRepo);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void submitAnswer_reconcilesGradeWhenAnswerIsDropped() {
+        when(activeRoundCache.get(1L)).thenReturn(activeRound());
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        Answer stored = new Answer();
+
+        ResponseEntity<Answer> response = answerController.submitAnswer(
+                1L, 1L, new AnswerSubmissionRequest("my answer"), request);
+
+        ArgumentCaptor<Consumer<Optional<Answer>>> onDropped = ArgumentCaptor.forClass(Consumer.class);
+        InOrder inOrder = inOrder(scoringService, answerWriter);
+        inOrder.verify(scoringService).grade(response.getBody(), testRound, testGame);
+        inOrder.verify(answerWriter).submit(eq(response.getBody()), onDropped.capture());
+
+        onDropped.getValue().accept(Optional.of(stored));
+        verify(scoringService).reconcile(response.getBody(), stored, testRound, testGame);
     }
 
     @Test
     void submitAnswer_throws401WhenNotAuthenticated() {
-        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
+        when(activeRoundCache.get(1L)).thenReturn(activeRound());
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> answerController.submitAnswer(1L, 1L, new AnswerSubmissionRequest("answer"), request));
@@ -127,7 +168,7 @@ class AnswerControllerTest {
 
     @Test
     void submitAnswer_throws404WhenQuestionNotInRound() {
-        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
+        when(activeRoundCache.get(1L)).thenReturn(activeRound());
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> answerController.submitAnswer(1L, 99L, new AnswerSubmissionRequest("answer"), request));
@@ -138,10 +179,8 @@ class AnswerControllerTest {
     @Test
     void submitAnswer_throws403WhenRoundEnded() {
         testRound.setEndedAt(Instant.now().minus(Duration.ofMinutes(1)));
-        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
+        when(activeRoundCache.get(1L)).thenReturn(activeRound());
         when(request.getAttribute("playerId")).thenReturn(1L);
-        when(playerRepo.findById(1L)).thenReturn(Optional.of(testPlayer));
-        when(gameRepo.findById(1L)).thenReturn(Optional.of(testGame));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> answerController.submitAnswer(1L, 1L, new AnswerSubmissionRequest("answer"), request));
@@ -152,10 +191,8 @@ class AnswerControllerTest {
     @Test
     void submitAnswer_throws403WhenPlayerNotInTeam() {
         testPlayer.setTeamId(null);
-        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
+        when(activeRoundCache.get(1L)).thenReturn(activeRound());
         when(request.getAttribute("playerId")).thenReturn(1L);
-        when(playerRepo.findById(1L)).thenReturn(Optional.of(testPlayer));
-        when(gameRepo.findById(1L)).thenReturn(Optional.of(testGame));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> answerController.submitAnswer(1L, 1L, new AnswerSubmissionRequest("answer"), request));
@@ -164,23 +201,69 @@ class AnswerControllerTest {
     }
 
     @Test
-    void getAnswers_returnsAnswersWhenRoundEnded() {
+    void submitAnswer_throws403WhenPlayerNotInRoom() {
+        when(activeRoundCache.get(1L)).thenReturn(activeRound());
+        when(request.getAttribute("playerId")).thenReturn(2L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> answerController.submitAnswer(1L, 1L, new AnswerSubmissionRequest("answer"), request));
+
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+        verifyNoInteractions(answerRepo);
+    }
+
+    @Test
+    void getAnswers_computesRoundResultsWhenRoundEnded() {
         testRound.setEndedAt(Instant.now().minus(Duration.ofMinutes(1)));
-        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
-        when(questionRepo.findById(1L)).thenReturn(Optional.of(testQuestion));
-        when(answerRepo.findByRoundIdAndQuestionId(1L, 1L)).thenReturn(List.of(testAnswer));
+        byte[] answers = "[]".getBytes(StandardCharsets.UTF_8);
+        when(roundResultsCache.getIfPresent(1L)).thenReturn(Optional.empty());
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(testRound));
+        when(roundResultsCache.get(testRound)).thenReturn(Optional.of(results(Map.of(1L, answers))));
 
-        ResponseEntity<List<Answer>> response = answerController.getAnswers(1L, 1L);
+        ResponseEntity<byte[]> response = answerController.getAnswers(1L, 1L);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(1, response.getBody().size());
-        verify(answerRepo).findByRoundIdAndQuestionId(1L, 1L);
+        assertSame(answers, response.getBody());
+    }
+
+    @Test
+    void getAnswers_returns202WhileAnswersOfRoundAreUnwritten() {
+        testRound.setEndedAt(Instant.now());
+        when(roundResultsCache.getIfPresent(1L)).thenReturn(Optional.empty());
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(testRound));
+        when(roundResultsCache.get(testRound)).thenReturn(Optional.empty());
+
+        ResponseEntity<byte[]> response = answerController.getAnswers(1L, 1L);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void getAnswers_servesCachedRoundResultsWithoutLoadingRound() {
+        byte[] answers = "[]".getBytes(StandardCharsets.UTF_8);
+        when(roundResultsCache.getIfPresent(1L)).thenReturn(Optional.of(results(Map.of(1L, answers))));
+
+        ResponseEntity<byte[]> response = answerController.getAnswers(1L, 1L);
+
+        assertSame(answers, response.getBody());
+        verifyNoInteractions(activeRoundCache, roundRepo, answerRepo);
+    }
+
+    @Test
+    void getAnswers_throws404WhenQuestionNotInRound() {
+        when(roundResultsCache.getIfPresent(1L)).thenReturn(Optional.of(results(Map.of())));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> answerController.getAnswers(1L, 2L));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
     }
 
     @Test
     void getAnswers_throws403WhenRoundNotEnded() {
-        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
-        when(questionRepo.findById(1L)).thenReturn(Optional.of(testQuestion));
+        when(roundResultsCache.getIfPresent(1L)).thenReturn(Optional.empty());
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(testRound));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> answerController.getAnswers(1L, 1L));
@@ -201,6 +284,64 @@ class AnswerControllerTest {
         assertEquals(testAnswer, response.getBody());
     }
 
+    @Test
+    void getAnswer_returnsWrittenAnswerThatWasLastGraded() {
+        testAnswer.setCreatedAt(Instant.now());
+        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(playerRepo.findById(1L)).thenReturn(Optional.of(testPlayer));
+        when(answerRepo.findByRoundIdAndQuestionIdAndPlayerId(1L, 1L, 1L)).thenReturn(Optional.of(testAnswer));
+        when(scoringService.getGradedAt(1L, 1L, 1L)).thenReturn(testAnswer.getCreatedAt());
+
+        ResponseEntity<Answer> response = answerController.getAnswer(1L, 1L, 1L, request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(testAnswer, response.getBody());
+    }
+
+    @Test
+    void getAnswer_returns202WhenLaterAnswerIsQueuedOnAnotherNode() {
+        testAnswer.setCreatedAt(Instant.now().minusSeconds(5));
+        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(playerRepo.findById(1L)).thenReturn(Optional.of(testPlayer));
+        when(answerRepo.findByRoundIdAndQuestionIdAndPlayerId(1L, 1L, 1L)).thenReturn(Optional.of(testAnswer));
+        when(scoringService.getGradedAt(1L, 1L, 1L)).thenReturn(Instant.now());
+
+        ResponseEntity<Answer> response = answerController.getAnswer(1L, 1L, 1L, request);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertNull(response.getBody());
+        verify(answerWriter).flush();
+    }
+
+    @Test
+    void getAnswer_returns202WhenFirstAnswerIsQueuedOnAnotherNode() {
+        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(playerRepo.findById(1L)).thenReturn(Optional.of(testPlayer));
+        when(answerRepo.findByRoundIdAndQuestionIdAndPlayerId(1L, 1L, 1L)).thenReturn(Optional.empty());
+        when(scoringService.getGradedAt(1L, 1L, 1L)).thenReturn(Instant.now());
+
+        ResponseEntity<Answer> response = answerController.getAnswer(1L, 1L, 1L, request);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+    }
+
+    @Test
+    void getAnswer_readsMembershipFromCurrentToken() {
+        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(request.getAttribute("membership")).thenReturn(new PlayerMembership(1L, 1L, 1L));
+        when(answerRepo.findByRoundIdAndQuestionIdAndPlayerId(1L, 1L, 1L)).thenReturn(Optional.of(testAnswer));
+
+        ResponseEntity<Answer> response = answerController.getAnswer(1L, 1L, 1L, request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verifyNoInteractions(playerRepo);
+    }
+
     @Test
     void getAnswer_throws401WhenNotAuthenticated() {
         when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
@@ -1,14 +1,16 @@
 package com.example.trivia.controller;
 
+import com.example.trivia.dto.Leaderboard;
 import com.example.trivia.model.Game;
-import com.example.trivia.model.Question;
 import com.example.trivia.model.Room;
-import com.example.trivia.model.Round;
 import com.example.trivia.repository.GameRepository;
-import com.example.trivia.repository.QuestionRepository;
 import com.example.trivia.repository.RoomRepository;
-import com.example.trivia.repository.RoundRepository;
+import com.example.trivia.service.ActiveRoundCache;
+import com.example.trivia.service.GameService;
+import com.example.trivia.service.QuestionCatalog;
+import com.example.trivia.service.ScoringService;
 import com.example.trivia.service.SseService;
+import com.example.trivia.util.Cursor;
 
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -16,7 +18,6 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -41,17 +42,23 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class GameControllerTest {
+    @Mock
+    private ActiveRoundCache activeRoundCache;
+
     @Mock
     private GameRepository gameRepo;
 
     @Mock
-    private QuestionRepository questionRepo;
+    private GameService gameService;
+
+    @Mock
+    private QuestionCatalog questionCatalog;
 
     @Mock
     private RoomRepository roomRepo;
 
     @Mock
-    private RoundRepository roundRepo;
+    private ScoringService scoringService;
 
     @Mock
     private SseService sseService;
@@ -64,7 +71,6 @@ class GameControllerTest {
 
     private Game testGame;
     private Room testRoom;
-    private Question testQuestion;
 
     @BeforeEach
     void setUp() {
@@ -78,9 +84,6 @@ class GameControllerTest {
         testRoom.setId(1L);
         testRoom.setCreatedAt(Instant.now());
         testRoom.setHostId(1L);
-
-        testQuestion = new Question();
-        testQuestion.setId(1L);
     }
 
     @Test
@@ -96,38 +99,81 @@ class GameControllerTest {
         Page<Game> gamesPage = new PageImpl<>(Arrays.asList(game1, game2), PageRequest.of(0, 10), 2);
         when(gameRepo.findByRoomId(1L, PageRequest.of(0, 10))).thenReturn(gamesPage);
 
-        ResponseEntity<List<Game>> response = gameController.getGames(1L, 0, 10);
+        ResponseEntity<List<Game>> response = gameController.getGames(1L, null, 0, 10);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(2, response.getBody().size());
         verify(gameRepo).findByRoomId(1L, PageRequest.of(0, 10));
     }
 
+    @Test
+    void getGames_returnsCursorPagesWithoutCounting() {
+        Instant now = Instant.now();
+        Game game1 = new Game();
+        game1.setId(3L);
+        game1.setCreatedAt(now);
+
+        Game game2 = new Game();
+        game2.setId(2L);
+        game2.setCreatedAt(now.minusSeconds(60));
+
+        Game game3 = new Game();
+        game3.setId(1L);
+        game3.setCreatedAt(now.minusSeconds(120));
+
+        when(gameRepo.findFirstPage(3)).thenReturn(List.of(game1, game2, game3));
+
+        ResponseEntity<List<Game>> response = gameController.getGames(null, "", 0, 2);
+
+        assertEquals(List.of(game1, game2), response.getBody());
+        String nextCursor = new Cursor(game2.getCreatedAt(), 2L).encode();
+        assertTrue(response.getHeaders().getFirst("Link").contains("cursor=" + nextCursor + "&size=2>; rel=\"next\""));
+        assertFalse(response.getHeaders().getFirst("Link").contains("rel=\"last\""));
+
+        when(gameRepo.findPageAfter(game2.getCreatedAt(), 2L, 3)).thenReturn(List.of(game3));
+
+        response = gameController.getGames(null, nextCursor, 0, 2);
+
+        assertEquals(List.of(game3), response.getBody());
+        assertFalse(response.getHeaders().getFirst("Link").contains("rel=\"next\""));
+        verify(gameRepo, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void getGames_throws400WhenCursorIsInvalid() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> gameController.getGames(1L, "not a cursor", 0, 10));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
     @Test
     void createGame_createsNewGameAndReturns201() {
         when(request.getAttribute("playerId")).thenReturn(1L);
         when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
-        when(roomRepo.save(any(Room.class))).thenReturn(testRoom);
-        when(questionRepo.count()).thenReturn(1L);
-        when(questionRepo.findAll(any(Pageable.class))).thenReturn(
-                new PageImpl<>(List.of(testQuestion), PageRequest.of(0, 1), 1));
-        when(gameRepo.save(any(Game.class))).thenAnswer(invocation -> {
-            Game g = invocation.getArgument(0);
-            g.setId(1L);
-            return g;
-        });
+        when(questionCatalog.size()).thenReturn(1);
+        when(gameService.createGame(testRoom, 1, Duration.ofSeconds(60), 1)).thenReturn(testGame);
 
         ResponseEntity<Game> response = gameController.createGame(1L, 1, 60, 1, request);
 
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
-        assertNotNull(response.getBody());
-        assertEquals(1L, response.getBody().getId());
-
-        ArgumentCaptor<Game> gameCaptor = ArgumentCaptor.forClass(Game.class);
-        verify(gameRepo).save(gameCaptor.capture());
-        assertEquals(Duration.ofSeconds(60),
-                Duration.between(gameCaptor.getValue().getCreatedAt(), gameCaptor.getValue().getEndedAt()));
-        verify(roundRepo).save(any(Round.class));
+        assertEquals(testGame, response.getBody());
+        verify(gameService).createGame(testRoom, 1, Duration.ofSeconds(60), 1);
+        verify(activeRoundCache).invalidateRoom(1L);
+        verify(sseService).publish("1", "game-created", 1L);
+    }
+
+    @Test
+    void createGame_throws400WhenNotEnoughQuestions() {
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(questionCatalog.size()).thenReturn(5);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> gameController.createGame(1L, 2, 60, 3, request));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verify(gameService, never()).createGame(any(Room.class), anyInt(), any(Duration.class), anyInt());
     }
 
     @Test
@@ -174,6 +220,28 @@ class GameControllerTest {
         verify(gameRepo).findById(1L);
     }
 
+    @Test
+    void getLeaderboard_returnsTopScores() {
+        Leaderboard leaderboard = new Leaderboard(1L,
+                List.of(new Leaderboard.Score(2L, 5), new Leaderboard.Score(1L, 3)),
+                List.of(new Leaderboard.Score(1L, 8)));
+        when(scoringService.getLeaderboard(1L, 10)).thenReturn(leaderboard);
+
+        ResponseEntity<Leaderboard> response = gameController.getLeaderboard(1L, 10);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(leaderboard, response.getBody());
+        verifyNoInteractions(gameRepo);
+    }
+
+    @Test
+    void getLeaderboard_throws400WhenLimitOutOfRange() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> gameController.getLeaderboard(1L, 0));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
     @Test
     void deleteGame_deletesGameWhenHost() {
         when(request.getAttribute("playerId")).thenReturn(1L);
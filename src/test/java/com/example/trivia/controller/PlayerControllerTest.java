@@ -1,19 +1,26 @@
 package com.example.trivia.controller;
 
-import com.example.trivia.component.JwtKeyLocator;
+import com.example.trivia.dto.BulkJoinRequest;
+import com.example.trivia.dto.BulkJoinResponse;
 import com.example.trivia.dto.RoomJoinResponse;
 import com.example.trivia.model.Player;
 import com.example.trivia.model.Room;
 import com.example.trivia.repository.PlayerRepository;
 import com.example.trivia.repository.RoomRepository;
+import com.example.trivia.service.ActiveRoundCache;
+import com.example.trivia.service.PlayerImportService;
+import com.example.trivia.service.PlayerService;
+import com.example.trivia.service.PlayerTokenService;
+import com.example.trivia.service.RoomVersionService;
 import com.example.trivia.service.SseService;
 
-import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.http.HttpServletRequest;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -22,28 +29,46 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class PlayerControllerTest {
     @Mock
-    private JwtKeyLocator jwtKeyLocator;
+    private ActiveRoundCache activeRoundCache;
+
+    @Mock
+    private PlayerImportService playerImportService;
 
     @Mock
     private PlayerRepository playerRepo;
 
+    @Mock
+    private PlayerService playerService;
+
+    @Mock
+    private PlayerTokenService playerTokenService;
+
     @Mock
     private RoomRepository roomRepo;
 
+    @Mock
+    private RoomVersionService roomVersionService;
+
     @Mock
     private SseService sseService;
 
+    @Mock
+    private HttpServletRequest request;
+
     @InjectMocks
     private PlayerController playerController;
 
@@ -64,10 +89,35 @@ class PlayerControllerTest {
         testPlayer.setUsername("testUser");
     }
 
+    @Test
+    void getPlayers_returnsPlayersWithETag() {
+        when(roomVersionService.getETag(1L)).thenReturn("W/\"1-42\"");
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(playerRepo.findByRoomId(1L)).thenReturn(List.of(testPlayer));
+
+        ResponseEntity<List<Player>> response = playerController.getPlayers(1L, "W/\"1-41\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("W/\"1-42\"", response.getHeaders().getETag());
+        assertEquals(List.of(testPlayer), response.getBody());
+    }
+
+    @Test
+    void getPlayers_returns304WhenRoomUnchanged() {
+        when(roomVersionService.getETag(1L)).thenReturn("W/\"1-42\"");
+
+        ResponseEntity<List<Player>> response = playerController.getPlayers(1L, "W/\"1-42\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("W/\"1-42\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verifyNoInteractions(roomRepo, playerRepo);
+    }
+
     @Test
     void joinRoom_createsNewPlayerAndReturns201() {
-        when(jwtKeyLocator.locate(any())).thenReturn(
-                Keys.hmacShaKeyFor("test-secret-key-1234567890123456".getBytes(StandardCharsets.UTF_8)));
+        when(playerTokenService.getMembershipVersion(1L)).thenReturn(3L);
+        when(playerTokenService.issue(testPlayer, 3L)).thenReturn("token");
         when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
         when(playerRepo.save(any(Player.class))).thenReturn(testPlayer);
 
@@ -75,9 +125,15 @@ class PlayerControllerTest {
 
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
         assertNotNull(response.getBody());
-        assertNotNull(response.getBody().token());
+        assertEquals("token", response.getBody().token());
+        // The version is read before the player exists, so the token is never newer than its team
+        InOrder inOrder = inOrder(playerTokenService, playerRepo);
+        inOrder.verify(playerTokenService).getMembershipVersion(1L);
+        inOrder.verify(playerRepo).save(any(Player.class));
         verify(roomRepo).findById(1L);
         verify(playerRepo).save(any(Player.class));
+        verify(roomRepo).claimHost(1L, 1L);
+        verify(playerRepo, never()).findByRoomId(any());
     }
 
     @Test
@@ -101,4 +157,159 @@ class PlayerControllerTest {
         assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
         verify(roomRepo).findById(1L);
     }
+
+    @Test
+    void joinRoomInBulk_returnsTokensAndPublishesOneEvent() {
+        Player otherPlayer = new Player();
+        otherPlayer.setId(2L);
+        otherPlayer.setRoomId(1L);
+        otherPlayer.setUsername("otherUser");
+
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(playerImportService.importPlayers(1L, List.of("testUser", "otherUser")))
+                .thenReturn(List.of(testPlayer, otherPlayer));
+        when(playerTokenService.getMembershipVersion(1L)).thenReturn(3L);
+        when(playerTokenService.issue(any(Player.class), eq(3L))).thenReturn("token");
+
+        ResponseEntity<BulkJoinResponse> response = playerController.joinRoomInBulk(1L,
+                new BulkJoinRequest(List.of("testUser", "otherUser")), request);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(List.of(new BulkJoinResponse.JoinedPlayer(1L, "testUser", "token"),
+                new BulkJoinResponse.JoinedPlayer(2L, "otherUser", "token")), response.getBody().players());
+        verify(sseService).publish("1", "players-joined", List.of(1L, 2L));
+        verify(sseService, times(1)).publish(any(), any(), any());
+    }
+
+    @Test
+    void joinRoomInBulk_throws403WhenNotHost() {
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(request.getAttribute("playerId")).thenReturn(2L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> playerController.joinRoomInBulk(1L, new BulkJoinRequest(List.of("otherUser")), request));
+
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+        verifyNoInteractions(playerImportService);
+    }
+
+    @Test
+    void joinRoomInBulk_throws400WhenTooManyPlayers() {
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> playerController.joinRoomInBulk(1L,
+                        new BulkJoinRequest(Collections.nCopies(1001, "player")), request));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(playerImportService);
+    }
+
+    @Test
+    void joinRoomInBulk_throws400WhenUsernameIsInvalid() {
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+
+        for (List<String> usernames : List.of(
+                Arrays.asList("testUser", null),
+                List.of("testUser", "  "),
+                List.of("testUser", "x".repeat(256)))) {
+            ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                    () -> playerController.joinRoomInBulk(1L, new BulkJoinRequest(usernames), request));
+
+            assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        }
+        verifyNoInteractions(playerImportService, playerTokenService, sseService);
+    }
+
+    @Test
+    void refreshToken_issuesTokenWithCurrentMembership() {
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(playerRepo.findById(1L)).thenReturn(Optional.of(testPlayer));
+        when(playerTokenService.issue(1L, 1L)).thenReturn(Optional.of("token"));
+
+        ResponseEntity<RoomJoinResponse> response = playerController.refreshToken(1L, request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("token", response.getBody().token());
+    }
+
+    @Test
+    void refreshToken_throws403ForAnotherPlayer() {
+        when(request.getAttribute("playerId")).thenReturn(2L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> playerController.refreshToken(1L, request));
+
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+        verifyNoInteractions(playerTokenService);
+    }
+
+    @Test
+    void deletePlayer_bumpsMembershipVersionOfRoom() {
+        Player otherPlayer = new Player();
+        otherPlayer.setId(2L);
+        otherPlayer.setRoomId(1L);
+
+        when(playerRepo.findById(2L)).thenReturn(Optional.of(otherPlayer));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+
+        ResponseEntity<Void> response = playerController.deletePlayer(2L, request);
+
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        verify(playerService).deletePlayer(2L, 1L);
+        verify(playerTokenService).bumpMembershipVersion(1L);
+    }
+
+    @Test
+    void deletePlayer_keepsHostWhenHostKicksAnotherPlayer() {
+        Player otherPlayer = new Player();
+        otherPlayer.setId(2L);
+        otherPlayer.setRoomId(1L);
+
+        when(playerRepo.findById(2L)).thenReturn(Optional.of(otherPlayer));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+
+        playerController.deletePlayer(2L, request);
+
+        // Only a vacant host is assigned, so the host who kicked stays host
+        verify(playerService).deletePlayer(2L, 1L);
+        verify(roomRepo, never()).save(any(Room.class));
+        verify(playerRepo, never()).findByRoomId(any());
+    }
+
+    @Test
+    void deletePlayer_assignsSuccessorAfterHostLeaves() {
+        when(playerRepo.findById(1L)).thenReturn(Optional.of(testPlayer));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+
+        ResponseEntity<Void> response = playerController.deletePlayer(1L, request);
+
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        verify(playerService).deletePlayer(1L, 1L);
+        verify(playerRepo, never()).deleteById(any());
+    }
+
+    @Test
+    void deletePlayer_throws403WhenRoomHasNoHost() {
+        Player otherPlayer = new Player();
+        otherPlayer.setId(2L);
+        otherPlayer.setRoomId(1L);
+        testRoom.setHostId(null);
+
+        when(playerRepo.findById(2L)).thenReturn(Optional.of(otherPlayer));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> playerController.deletePlayer(2L, request));
+
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+        verifyNoInteractions(playerService);
+    }
 }
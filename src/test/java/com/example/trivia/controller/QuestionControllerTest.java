@@ -1,9 +1,11 @@
 package com.example.trivia.controller;
 
-import com.example.trivia.model.Question;
+import com.example.trivia.model.QuestionRef;
 import com.example.trivia.model.Round;
-import com.example.trivia.repository.QuestionRepository;
-import com.example.trivia.repository.RoundRepository;
+import com.example.trivia.service.ActiveRoundCache;
+import com.example.trivia.service.QuestionCatalog;
+import com.example.trivia.service.RoundResultsCache;
+import com.example.trivia.service.ScoringService;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,12 +16,15 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,72 +33,149 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class QuestionControllerTest {
     @Mock
-    private QuestionRepository questionRepo;
+    private ActiveRoundCache activeRoundCache;
 
     @Mock
-    private RoundRepository roundRepo;
+    private QuestionCatalog questionCatalog;
+
+    @Mock
+    private RoundResultsCache roundResultsCache;
+
+    @Mock
+    private ScoringService scoringService;
 
     @InjectMocks
     private QuestionController questionController;
 
-    private Question testQuestion;
     private Round testRound;
 
     @BeforeEach
     void setUp() {
-        testQuestion = new Question();
-        testQuestion.setId(1L);
-        testQuestion.setType("multiple_choice");
-        testQuestion.setQuestion("Test question");
-
         testRound = new Round();
         testRound.setId(1L);
         testRound.setGameId(1L);
         testRound.setCreatedAt(Instant.now());
         testRound.setEndedAt(Instant.now().plus(Duration.ofMinutes(10)));
+        testRound.getQuestions().add(new QuestionRef(2L));
+        testRound.getQuestions().add(new QuestionRef(1L));
     }
 
     @Test
-    void getQuestions_returnsQuestionsList() {
-        testQuestion.setCorrectAnswers(List.of("answer1"));
-        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
-        when(questionRepo.findByRoundId(1L)).thenReturn(List.of(testQuestion));
+    void getQuestions_returnsRedactedQuestions() {
+        byte[] json = "[{\"id\":1},{\"id\":2}]".getBytes(StandardCharsets.UTF_8);
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(testRound));
+        when(questionCatalog.writeJsonArray(List.of(1L, 2L), false)).thenReturn(json);
 
-        ResponseEntity<List<Question>> response = questionController.getQuestions(1L);
+        ResponseEntity<byte[]> response = questionController.getQuestions(1L, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(1, response.getBody().size());
-        assertTrue(response.getBody().get(0).getCorrectAnswers().isEmpty());
-        verify(questionRepo).findByRoundId(1L);
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        assertArrayEquals(json, response.getBody());
+        verify(questionCatalog).writeJsonArray(List.of(1L, 2L), false);
     }
 
     @Test
-    void getQuestions_returnsCorrectAnswersWhenRoundEnded() {
+    void getQuestions_returnsRevealedQuestionsWhenRoundEnded() {
         testRound.setEndedAt(Instant.now().minus(Duration.ofMinutes(1)));
-        testQuestion.setCorrectAnswers(List.of("answer1"));
-        when(roundRepo.findById(1L)).thenReturn(Optional.of(testRound));
-        when(questionRepo.findByRoundId(1L)).thenReturn(List.of(testQuestion));
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(testRound));
+        when(questionCatalog.writeJsonArray(List.of(1L, 2L), true)).thenReturn(new byte[0]);
 
-        ResponseEntity<List<Question>> response = questionController.getQuestions(1L);
+        ResponseEntity<byte[]> response = questionController.getQuestions(1L, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(List.of("answer1"), response.getBody().get(0).getCorrectAnswers());
-        verify(questionRepo).findByRoundId(1L);
+        verify(questionCatalog).writeJsonArray(List.of(1L, 2L), true);
     }
 
     @Test
-    void getQuestions_throws403WhenRoundNotStarted() {
-        Round round = new Round();
-        round.setId(1L);
-        round.setGameId(1L);
-        round.setCreatedAt(Instant.now().plus(Duration.ofMinutes(10)));
+    void getQuestions_readsEndedRoundFromRoundResults() {
+        testRound.setEndedAt(Instant.now().minus(Duration.ofMinutes(1)));
+        when(roundResultsCache.getIfPresent(1L)).thenReturn(Optional.of(
+                new RoundResultsCache.Results(testRound, new byte[0], Map.of(), Instant.now().plusSeconds(60))));
+        when(questionCatalog.writeJsonArray(List.of(1L, 2L), true)).thenReturn(new byte[0]);
+
+        ResponseEntity<byte[]> response = questionController.getQuestions(1L, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verifyNoInteractions(activeRoundCache);
+    }
+
+    @Test
+    void getQuestions_returns304WhenPhaseUnchanged() {
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(testRound));
+
+        ResponseEntity<byte[]> response = questionController.getQuestions(1L, "\"1-redacted\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"1-redacted\"", response.getHeaders().getETag());
+        verifyNoInteractions(questionCatalog);
+    }
+
+    @Test
+    void getQuestions_returns304ForClosedRoundWithoutLoadingIt() {
+        when(scoringService.isClosed(1L)).thenReturn(true);
 
-        when(roundRepo.findById(1L)).thenReturn(Optional.of(round));
+        ResponseEntity<byte[]> response = questionController.getQuestions(1L, "\"1-revealed\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"1-revealed\"", response.getHeaders().getETag());
+        verify(activeRoundCache, never()).getRound(1L);
+        verifyNoInteractions(questionCatalog);
+    }
+
+    @Test
+    void getQuestions_loadsRoundNotClosedYetToCheckRevealedCopy() {
+        when(scoringService.isClosed(1L)).thenReturn(false);
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(testRound));
+        when(questionCatalog.writeJsonArray(List.of(1L, 2L), false)).thenReturn(new byte[0]);
+
+        ResponseEntity<byte[]> response = questionController.getQuestions(1L, "\"1-revealed\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"1-redacted\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void getQuestions_checksCachedRoundWithoutAskingRedis() {
+        when(activeRoundCache.getRoundIfPresent(1L)).thenReturn(Optional.of(testRound));
+
+        ResponseEntity<byte[]> response = questionController.getQuestions(1L, "\"1-redacted\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(activeRoundCache, never()).getRound(1L);
+        verifyNoInteractions(scoringService, questionCatalog);
+    }
+
+    @Test
+    void getQuestions_returnsRevealedQuestionsToClientWithRedactedCopy() {
+        testRound.setEndedAt(Instant.now().minus(Duration.ofMinutes(1)));
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(testRound));
+        when(questionCatalog.writeJsonArray(List.of(1L, 2L), true)).thenReturn(new byte[0]);
+
+        ResponseEntity<byte[]> response = questionController.getQuestions(1L, "\"1-redacted\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"1-revealed\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void getQuestions_throws403WhenRoundNotStarted() {
+        testRound.setCreatedAt(Instant.now().plus(Duration.ofMinutes(10)));
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(testRound));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
-                () -> questionController.getQuestions(1L));
+                () -> questionController.getQuestions(1L, null));
 
         assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
-        verify(roundRepo).findById(1L);
+        verifyNoInteractions(questionCatalog);
+    }
+
+    @Test
+    void getQuestions_throws404WhenRoundNotFound() {
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.empty());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> questionController.getQuestions(1L, null));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
     }
 }
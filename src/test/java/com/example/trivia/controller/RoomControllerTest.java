@@ -1,10 +1,14 @@
 package com.example.trivia.controller;
 
+import com.example.trivia.dto.PlayerMembership;
+import com.example.trivia.dto.RoomSnapshot;
 import com.example.trivia.model.Player;
 import com.example.trivia.model.Room;
 import com.example.trivia.repository.PlayerRepository;
 import com.example.trivia.repository.RoomRepository;
+import com.example.trivia.service.RoomSnapshotService;
 import com.example.trivia.service.SseService;
+import com.example.trivia.util.Cursor;
 
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -21,11 +25,14 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +43,9 @@ class RoomControllerTest {
     @Mock
     private RoomRepository roomRepo;
 
+    @Mock
+    private RoomSnapshotService roomSnapshotService;
+
     @Mock
     private SseService sseService;
 
@@ -74,6 +84,88 @@ class RoomControllerTest {
         verify(roomRepo).save(argThat(room -> "TEST123".equals(room.getCode())));
     }
 
+    // Stands in for the snapshot service, which checks access as soon as it loads the room
+    private void stubSnapshot(RoomSnapshot snapshot) {
+        when(roomSnapshotService.getSnapshot(eq(1L), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<Room>>getArgument(1).accept(snapshot.room());
+            return Optional.of(snapshot);
+        });
+    }
+
+    @Test
+    void getRoomSnapshot_returnsSnapshotToPlayerInPrivateRoom() {
+        RoomSnapshot snapshot = new RoomSnapshot(7L, testRoom, List.of(testPlayer), List.of(), null, List.of(),
+                null, null);
+        stubSnapshot(snapshot);
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(request.getAttribute("membership")).thenReturn(new PlayerMembership(1L, 1L, null));
+
+        ResponseEntity<RoomSnapshot> response = roomController.getRoomSnapshot(1L, request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(7L, response.getBody().version());
+        verifyNoInteractions(playerRepo, roomRepo);
+    }
+
+    @Test
+    void getRoomSnapshot_throws403WhenPlayerNotInPrivateRoom() {
+        RoomSnapshot snapshot = new RoomSnapshot(7L, testRoom, List.of(testPlayer), List.of(), null, List.of(),
+                null, null);
+        stubSnapshot(snapshot);
+        when(request.getAttribute("playerId")).thenReturn(2L);
+        when(request.getAttribute("membership")).thenReturn(new PlayerMembership(2L, 3L, null));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> roomController.getRoomSnapshot(1L, request));
+
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+    }
+
+    @Test
+    void getRoomSnapshot_throws401WhenPlayerNotAuthenticatedInPrivateRoom() {
+        RoomSnapshot snapshot = new RoomSnapshot(7L, testRoom, List.of(testPlayer), List.of(), null, List.of(),
+                null, null);
+        stubSnapshot(snapshot);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> roomController.getRoomSnapshot(1L, request));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, ex.getStatusCode());
+        verifyNoInteractions(playerRepo);
+    }
+
+    @Test
+    void getRoomSnapshot_throws404WhenRoomNotFound() {
+        when(roomSnapshotService.getSnapshot(eq(1L), any())).thenReturn(Optional.empty());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> roomController.getRoomSnapshot(1L, request));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+
+    @Test
+    void getRooms_continuesAfterCursor() {
+        Cursor cursor = new Cursor(Instant.now(), 5L);
+        when(roomRepo.findPublicPageAfter(cursor.createdAt(), 5L, 11)).thenReturn(List.of(testRoom));
+
+        ResponseEntity<List<Room>> response = roomController.getRooms(cursor.encode(), 0, 10);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of(testRoom), response.getBody());
+        assertFalse(response.getHeaders().getFirst("Link").contains("rel=\"next\""));
+        assertTrue(response.getHeaders().getFirst("Link").contains("cursor=&size=10>; rel=\"first\""));
+        verify(roomRepo, never()).findByCodeIsNull(any());
+    }
+
+    @Test
+    void getRooms_throws400WhenCursorPageSizeIsTooLarge() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> roomController.getRooms("", 0, 1000));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
     @Test
     void getRoom_returnsRoomWhenFound() {
         when(request.getAttribute("playerId")).thenReturn(1L);
@@ -108,6 +200,7 @@ class RoomControllerTest {
         assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
         verify(roomRepo).findById(1L);
         verify(roomRepo).deleteById(1L);
+        verify(sseService).deleteTopic("1");
     }
 
     @Test
@@ -4,6 +4,9 @@ import com.example.trivia.model.Game;
 import com.example.trivia.model.Round;
 import com.example.trivia.repository.GameRepository;
 import com.example.trivia.repository.RoundRepository;
+import com.example.trivia.service.ActiveRoundCache;
+import com.example.trivia.service.RoomVersionService;
+import com.example.trivia.service.RoundResultsCache;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,12 +16,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,12 +34,21 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class RoundControllerTest {
+    @Mock
+    private ActiveRoundCache activeRoundCache;
+
     @Mock
     private GameRepository gameRepo;
 
+    @Mock
+    private RoomVersionService roomVersionService;
+
     @Mock
     private RoundRepository roundRepo;
 
+    @Mock
+    private RoundResultsCache roundResultsCache;
+
     @InjectMocks
     private RoundController roundController;
 
@@ -55,14 +72,94 @@ class RoundControllerTest {
         round2.setId(2L);
         round2.setGameId(1L);
 
+        when(roomVersionService.findRoomIdOfGame(1L)).thenReturn(Optional.of(1L));
+        when(roomVersionService.getETag(1L)).thenReturn("W/\"1-42\"");
         when(gameRepo.findById(1L)).thenReturn(Optional.of(testGame));
         when(roundRepo.findByGameId(1L)).thenReturn(Arrays.asList(round1, round2));
 
-        ResponseEntity<List<Round>> response = roundController.getRounds(1L);
+        ResponseEntity<List<Round>> response = roundController.getRounds(1L, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("W/\"1-42\"", response.getHeaders().getETag());
         assertEquals(2, response.getBody().size());
         verify(gameRepo).findById(1L);
         verify(roundRepo).findByGameId(1L);
     }
+
+    @Test
+    void getRounds_returns304WhenRoomUnchanged() {
+        when(roomVersionService.findRoomIdOfGame(1L)).thenReturn(Optional.of(1L));
+        when(roomVersionService.getETag(1L)).thenReturn("W/\"1-42\"");
+
+        ResponseEntity<List<Round>> response = roundController.getRounds(1L, "W/\"1-42\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verifyNoInteractions(gameRepo, roundRepo);
+    }
+
+    @Test
+    void getRounds_throws404WhenGameNotFound() {
+        when(roomVersionService.findRoomIdOfGame(1L)).thenReturn(Optional.empty());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> roundController.getRounds(1L, null));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+
+    @Test
+    void getRound_returns304WhenRoomUnchanged() {
+        when(roomVersionService.findRoomIdOfRound(1L)).thenReturn(Optional.of(1L));
+        when(roomVersionService.getETag(1L)).thenReturn("W/\"1-42\"");
+
+        ResponseEntity<Round> response = roundController.getRound(1L, "W/\"1-42\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verifyNoInteractions(roundRepo);
+    }
+
+    @Test
+    void getRoundResults_computesResultsOnceRoundEnded() {
+        Round round = new Round();
+        round.setId(1L);
+        round.setEndedAt(Instant.now().minus(Duration.ofMinutes(1)));
+        byte[] json = "{\"roundId\":1}".getBytes(StandardCharsets.UTF_8);
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(round));
+        when(roundResultsCache.get(round)).thenReturn(
+                Optional.of(new RoundResultsCache.Results(round, json, Map.of(), Instant.now().plusSeconds(60))));
+
+        ResponseEntity<byte[]> response = roundController.getRoundResults(1L);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(json, response.getBody());
+    }
+
+    @Test
+    void getRoundResults_returns202WhileAnswersAreUnwritten() {
+        Round round = new Round();
+        round.setId(1L);
+        round.setEndedAt(Instant.now());
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(round));
+        when(roundResultsCache.get(round)).thenReturn(Optional.empty());
+
+        ResponseEntity<byte[]> response = roundController.getRoundResults(1L);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void getRoundResults_throws403WhenRoundNotEnded() {
+        Round round = new Round();
+        round.setId(1L);
+        round.setEndedAt(Instant.now().plus(Duration.ofMinutes(1)));
+        when(activeRoundCache.getRound(1L)).thenReturn(Optional.of(round));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> roundController.getRoundResults(1L));
+
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+        verify(roundResultsCache, never()).get(any(Round.class));
+    }
 }
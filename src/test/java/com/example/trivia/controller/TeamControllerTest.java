@@ -0,0 +1,120 @@
+package com.example.trivia.controller;
+
+import com.example.trivia.model.Room;
+import com.example.trivia.repository.PlayerRepository;
+import com.example.trivia.repository.RoomRepository;
+import com.example.trivia.repository.TeamRepository;
+import com.example.trivia.service.PlayerTokenService;
+import com.example.trivia.service.RoomVersionService;
+import com.example.trivia.service.SseService;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TeamControllerTest {
+    @Mock
+    private PlayerRepository playerRepo;
+
+    @Mock
+    private PlayerTokenService playerTokenService;
+
+    @Mock
+    private RoomRepository roomRepo;
+
+    @Mock
+    private RoomVersionService roomVersionService;
+
+    @Mock
+    private TeamRepository teamRepo;
+
+    @Mock
+    private SseService sseService;
+
+    @Mock
+    private HttpServletRequest request;
+
+    @InjectMocks
+    private TeamController teamController;
+
+    private Room testRoom;
+
+    @BeforeEach
+    void setUp() {
+        testRoom = new Room();
+        testRoom.setId(1L);
+        testRoom.setCreatedAt(Instant.now());
+        testRoom.setHostId(1L);
+    }
+
+    @Test
+    void balanceTeams_assignsPlayersAndPublishesOneEvent() {
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(teamRepo.countByRoomId(1L)).thenReturn(2L);
+        when(playerRepo.balanceTeams(1L)).thenReturn(7);
+
+        ResponseEntity<Void> response = teamController.balanceTeams(1L, request);
+
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        verify(playerTokenService).bumpMembershipVersion(1L);
+        verify(sseService).publish("1", "teams-rebalanced", 7);
+        verify(playerRepo, never()).save(any());
+    }
+
+    @Test
+    void balanceTeams_throws403WhenNotHost() {
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(request.getAttribute("playerId")).thenReturn(2L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> teamController.balanceTeams(1L, request));
+
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+        verifyNoInteractions(playerRepo);
+    }
+
+    @Test
+    void balanceTeams_throws409DuringGame() {
+        testRoom.setGameId(1L);
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> teamController.balanceTeams(1L, request));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+        verifyNoInteractions(playerRepo);
+    }
+
+    @Test
+    void balanceTeams_throws409WhenRoomHasNoTeams() {
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(request.getAttribute("playerId")).thenReturn(1L);
+        when(teamRepo.countByRoomId(1L)).thenReturn(0L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> teamController.balanceTeams(1L, request));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+        verifyNoInteractions(playerRepo);
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.trivia.repository;
+
+import org.flywaydb.core.Flyway;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Migrates a scratch schema of the PostgreSQL database at POSTGRES_URL, seeds
+ * it with enough rows that a sequential scan is never the cheapest plan, and
+ * checks the plan of every query of the repositories and of the services that
+ * query with JDBC, lookups and updates alike.
+ */
+@EnabledIfEnvironmentVariable(named = "POSTGRES_URL", matches = ".+")
+class QueryPlanTest {
+    private static final String SCHEMA = "query_plan_test";
+    // AnswerRepository.upsert, which AnswerWriter batches
+    private static final String UPSERT_ANSWER_SQL = """
+            INSERT INTO answers (round_id, question_id, player_id, team_id, created_at, answer)
+            VALUES (100, 101, 200, 100, now(), 'new answer')
+            ON CONFLICT (round_id, question_id, player_id) DO UPDATE
+            SET team_id = EXCLUDED.team_id, created_at = EXCLUDED.created_at, answer = EXCLUDED.answer
+            WHERE answers.created_at <= EXCLUDED.created_at
+            RETURNING *""";
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        String url = System.getenv("POSTGRES_URL");
+        String user = System.getenv().getOrDefault("POSTGRES_USER", "postgres");
+        String password = System.getenv().getOrDefault("POSTGRES_PASS", "postgres");
+
+        connection = DriverManager.getConnection(url, user, password);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        }
+
+        Flyway.configure()
+                .dataSource(url, user, password)
+                .schemas(SCHEMA)
+                .load()
+                .migrate();
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET search_path TO " + SCHEMA);
+            statement.execute("""
+                    INSERT INTO questions (type, question, options, correct_answers)
+                    SELECT 'open_ended', 'Question ' || i, ARRAY[]::TEXT[], ARRAY['answer']
+                    FROM generate_series(1, 10000) i""");
+            // One room in a hundred is public
+            statement.execute("""
+                    INSERT INTO rooms (created_at, code)
+                    SELECT now() - i * INTERVAL '1 minute', CASE WHEN i % 100 = 0 THEN NULL ELSE 'room' || i END
+                    FROM generate_series(1, 5000) i""");
+            statement.execute("INSERT INTO teams (room_id) SELECT id FROM rooms, generate_series(1, 2)");
+            statement.execute("""
+                    INSERT INTO players (room_id, team_id, username)
+                    SELECT room_id, id, 'player' || id || '-' || i FROM teams, generate_series(1, 2) i""");
+            statement.execute("""
+                    INSERT INTO games (room_id, created_at, ended_at)
+                    SELECT id, created_at, created_at + INTERVAL '5 minutes' FROM rooms""");
+            statement.execute("""
+                    INSERT INTO rounds (game_id, created_at, ended_at)
+                    SELECT id, created_at + (i - 1) * INTERVAL '1 minute', created_at + i * INTERVAL '1 minute'
+                    FROM games, generate_series(1, 5) i""");
+            statement.execute("""
+                    INSERT INTO round_questions (round_id, question_id)
+                    SELECT rounds.id, questions.id
+                    FROM rounds JOIN questions ON questions.id BETWEEN rounds.id % 9000 + 1 AND rounds.id % 9000 + 3""");
+            statement.execute("""
+                    INSERT INTO answers (round_id, question_id, player_id, team_id, created_at, answer)
+                    SELECT round_questions.round_id, round_questions.question_id, players.id, players.team_id,
+                        rounds.created_at, 'answer'
+                    FROM round_questions
+                    JOIN rounds ON rounds.id = round_questions.round_id
+                    JOIN games ON games.id = rounds.game_id
+                    JOIN players ON players.room_id = games.room_id""");
+            statement.execute("VACUUM ANALYZE");
+        }
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        if (connection != null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // AnswerRepository
+            "SELECT * FROM answers WHERE round_id = 100",
+            "SELECT * FROM answers WHERE round_id = 100 AND question_id = 101",
+            "SELECT * FROM answers WHERE round_id = 100 AND question_id = 101 AND player_id = 200",
+            UPSERT_ANSWER_SQL,
+            // GameRepository
+            "SELECT * FROM games WHERE room_id = 100 LIMIT 20 OFFSET 0",
+            "SELECT COUNT(*) FROM games WHERE room_id = 100",
+            "SELECT * FROM games ORDER BY created_at DESC, id DESC LIMIT 11",
+            """
+            SELECT * FROM games WHERE (created_at, id) < (now() - INTERVAL '2 days', 100)
+            ORDER BY created_at DESC, id DESC LIMIT 11""",
+            """
+            SELECT * FROM games WHERE room_id = 100 AND (created_at, id) < (now(), 100)
+            ORDER BY created_at DESC, id DESC LIMIT 11""",
+            // PlayerRepository
+            "SELECT * FROM players WHERE room_id = 100",
+            "SELECT id FROM players WHERE room_id = 100 ORDER BY id LIMIT 1",
+            """
+            WITH ranked_players AS (
+                SELECT id, ROW_NUMBER() OVER (ORDER BY id) - 1 AS position
+                FROM players
+                WHERE room_id = 100
+            ), ranked_teams AS (
+                SELECT id, ROW_NUMBER() OVER (ORDER BY id) - 1 AS position, COUNT(*) OVER () AS teams
+                FROM teams
+                WHERE room_id = 100
+            )
+            UPDATE players SET team_id = ranked_teams.id
+            FROM ranked_players
+            JOIN ranked_teams ON ranked_teams.position = ranked_players.position % ranked_teams.teams
+            WHERE players.id = ranked_players.id AND players.team_id IS DISTINCT FROM ranked_teams.id""",
+            // QuestionRepository
+            """
+            SELECT questions.* FROM questions JOIN round_questions ON questions.id = round_questions.question_id
+            WHERE round_questions.round_id = 100""",
+            // RoomRepository
+            "SELECT * FROM rooms WHERE code IS NULL LIMIT 20 OFFSET 0",
+            "SELECT COUNT(*) FROM rooms WHERE code IS NULL",
+            "SELECT * FROM rooms WHERE code IS NULL ORDER BY created_at DESC, id DESC LIMIT 11",
+            """
+            SELECT * FROM rooms WHERE code IS NULL AND (created_at, id) < (now() - INTERVAL '2 days', 100)
+            ORDER BY created_at DESC, id DESC LIMIT 11""",
+            "UPDATE rooms SET host_id = 200 WHERE id = 100 AND host_id IS NULL",
+            """
+            UPDATE rooms SET host_id = successor.id
+            FROM (SELECT id FROM players WHERE room_id = 100 ORDER BY id LIMIT 1) successor
+            WHERE rooms.id = 100 AND rooms.host_id IS NULL""",
+            "UPDATE rooms SET game_id = 100 WHERE id = 100",
+            // RoundRepository
+            "SELECT * FROM rounds WHERE game_id = 100",
+            // RoomSnapshotService
+            "SELECT id, game_id, created_at, ended_at FROM rounds WHERE game_id = 100 ORDER BY created_at, id",
+            "SELECT question_id FROM round_questions WHERE round_id = 100 ORDER BY question_id",
+            // TeamRepository
+            "SELECT * FROM teams WHERE room_id = 100",
+            "SELECT COUNT(*) FROM teams WHERE room_id = 100",
+    })
+    void query_usesAnIndex(String sql) throws SQLException {
+        List<String> plan = explain(sql);
+
+        assertTrue(plan.stream().noneMatch(line -> line.contains("Seq Scan")),
+                () -> "Sequential scan in the plan of " + sql + ":\n" + String.join("\n", plan));
+    }
+
+    @Test
+    void upsert_findsConflictingAnswerThroughTheUniqueAnswerKey() throws SQLException {
+        List<String> plan = explain(UPSERT_ANSWER_SQL);
+
+        assertTrue(plan.stream().anyMatch(line -> line.contains("Conflict Arbiter Indexes")
+                        && line.contains("answers_round_id_question_id_player_id_key")),
+                () -> "No unique answer key in the plan of the upsert:\n" + String.join("\n", plan));
+    }
+
+    private static List<String> explain(String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+                ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                plan.add(resultSet.getString(1));
+            }
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.trivia.service;
+
+import com.example.trivia.model.Game;
+import com.example.trivia.model.Player;
+import com.example.trivia.model.Round;
+import com.example.trivia.repository.GameRepository;
+import com.example.trivia.repository.PlayerRepository;
+import com.example.trivia.repository.RoundRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActiveRoundCacheTest {
+    @Mock
+    private GameRepository gameRepo;
+
+    @Mock
+    private PlayerRepository playerRepo;
+
+    @Mock
+    private RoundRepository roundRepo;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private ActiveRoundCache activeRoundCache;
+    private MessageListener invalidationListener;
+
+    private Round testRound;
+    private Game testGame;
+    private Player testPlayer;
+
+    @BeforeEach
+    void setUp() {
+        activeRoundCache = new ActiveRoundCache(gameRepo, playerRepo, roundRepo, redisTemplate,
+                redisMessageListenerContainer);
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(redisMessageListenerContainer).addMessageListener(listener.capture(), any(ChannelTopic.class));
+        invalidationListener = listener.getValue();
+
+        testGame = new Game();
+        testGame.setId(1L);
+        testGame.setRoomId(2L);
+
+        testRound = new Round();
+        testRound.setId(3L);
+        testRound.setGameId(1L);
+        testRound.setCreatedAt(Instant.now());
+        testRound.setEndedAt(Instant.now().plus(Duration.ofMinutes(1)));
+
+        testPlayer = new Player();
+        testPlayer.setId(4L);
+        testPlayer.setRoomId(2L);
+    }
+
+    private void stubLoad() {
+        when(roundRepo.findById(3L)).thenReturn(Optional.of(testRound));
+        when(gameRepo.findById(1L)).thenReturn(Optional.of(testGame));
+        when(playerRepo.findByRoomId(2L)).thenReturn(List.of(testPlayer));
+    }
+
+    private static DefaultMessage invalidation(String body) {
+        return new DefaultMessage("active-rounds:invalidations".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void get_loadsRoundWithGameAndPlayersOnce() {
+        stubLoad();
+
+        ActiveRoundCache.ActiveRound activeRound = activeRoundCache.get(3L).orElseThrow();
+        assertSame(activeRound, activeRoundCache.get(3L).orElseThrow());
+
+        assertEquals(testGame, activeRound.game());
+        assertEquals(testPlayer, activeRound.players().get(4L));
+        verify(roundRepo, times(1)).findById(3L);
+    }
+
+    @Test
+    void getRoundIfPresent_neverLoadsRound() {
+        assertTrue(activeRoundCache.getRoundIfPresent(3L).isEmpty());
+        verifyNoInteractions(roundRepo, gameRepo, playerRepo);
+
+        stubLoad();
+        activeRoundCache.get(3L);
+        assertSame(testRound, activeRoundCache.getRoundIfPresent(3L).orElseThrow());
+    }
+
+    @Test
+    void get_doesNotCacheRoundThatHasEnded() {
+        testRound.setEndedAt(Instant.now().minusSeconds(1));
+        stubLoad();
+
+        assertTrue(activeRoundCache.get(3L).isPresent());
+        assertTrue(activeRoundCache.get(3L).isPresent());
+
+        verify(roundRepo, times(2)).findById(3L);
+    }
+
+    @Test
+    void get_doesNotCacheRoundLoadedBeforeInvalidation() {
+        when(roundRepo.findById(3L)).thenReturn(Optional.of(testRound));
+        when(gameRepo.findById(1L)).thenReturn(Optional.of(testGame));
+        // A player joins on another node while the players of the room are loaded
+        when(playerRepo.findByRoomId(2L)).thenAnswer(invocation -> {
+            invalidationListener.onMessage(invalidation("room:2"), null);
+            return List.of(testPlayer);
+        }).thenReturn(List.of(testPlayer));
+
+        activeRoundCache.get(3L);
+        activeRoundCache.get(3L);
+
+        verify(roundRepo, times(2)).findById(3L);
+    }
+
+    @Test
+    void invalidateRoom_evictsRoundsOfRoomOnEveryNode() {
+        stubLoad();
+        activeRoundCache.get(3L);
+
+        activeRoundCache.invalidateRoom(5L);
+        activeRoundCache.get(3L);
+        verify(roundRepo, times(1)).findById(3L);
+
+        activeRoundCache.invalidateRoom(2L);
+        activeRoundCache.get(3L);
+        verify(roundRepo, times(2)).findById(3L);
+        verify(redisTemplate).convertAndSend("active-rounds:invalidations", "room:2");
+    }
+
+    @Test
+    void invalidateGame_evictsRoundsOfGameOnEveryNode() {
+        stubLoad();
+        activeRoundCache.get(3L);
+
+        activeRoundCache.invalidateGame(1L);
+        activeRoundCache.get(3L);
+
+        verify(roundRepo, times(2)).findById(3L);
+        verify(redisTemplate).convertAndSend("active-rounds:invalidations", "game:1");
+    }
+
+    @Test
+    void onMessage_evictsRoundsInvalidatedByAnotherNode() {
+        stubLoad();
+        activeRoundCache.get(3L);
+
+        invalidationListener.onMessage(invalidation("game:1"), null);
+        activeRoundCache.get(3L);
+
+        verify(roundRepo, times(2)).findById(3L);
+        verifyNoInteractions(redisTemplate);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.trivia.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerMatcherTest {
+
+    @Test
+    void openEnded_foldsCaseWhitespaceAndPunctuation() {
+        AnswerMatcher matcher = AnswerMatcher.compile("open_ended", List.of("useMemo", "useMemo()"), 1);
+
+        assertTrue(matcher.matches("usememo"));
+        assertTrue(matcher.matches("  UseMemo() "));
+        assertTrue(matcher.matches("use memo"));
+        assertFalse(matcher.matches("useCallback"));
+        assertFalse(matcher.matches(""));
+        assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    void openEnded_toleratesTyposInLongerAnswersOnly() {
+        AnswerMatcher longAnswer = AnswerMatcher.compile("open_ended", List.of("useMemo"), 1);
+        AnswerMatcher shortAnswer = AnswerMatcher.compile("open_ended", List.of("V8"), 1);
+
+        assertTrue(longAnswer.matches("useMemmo"));
+        assertTrue(longAnswer.matches("useMeno"));
+        assertFalse(longAnswer.matches("useMenno"));
+        assertFalse(shortAnswer.matches("V9"));
+        assertTrue(shortAnswer.matches("v8"));
+    }
+
+    @Test
+    void openEnded_matchesAnswersWithDigitsExactly() {
+        AnswerMatcher number = AnswerMatcher.compile("open_ended", List.of("10000"), 1);
+        AnswerMatcher version = AnswerMatcher.compile("open_ended", List.of("ES2015"), 1);
+
+        assertTrue(number.matches("10 000"));
+        assertFalse(number.matches("10001"));
+        assertFalse(number.matches("1000"));
+        assertTrue(version.matches("es 2015"));
+        assertFalse(version.matches("es-2015"));
+        assertFalse(version.matches("ES2016"));
+        assertFalse(version.matches("ES2O15"));
+    }
+
+    @Test
+    void openEnded_keepsDecimalPoints() {
+        AnswerMatcher matcher = AnswerMatcher.compile("open_ended", List.of("4.5:1", "4.5"), 0);
+
+        assertTrue(matcher.matches("4.5 : 1"));
+        assertTrue(matcher.matches("4.5"));
+        assertFalse(matcher.matches("45"));
+        assertFalse(matcher.matches("451"));
+        assertFalse(matcher.matches("4.51"));
+    }
+
+    @Test
+    void openEnded_keepsSignificantSymbols() {
+        AnswerMatcher cpp = AnswerMatcher.compile("open_ended", List.of("C++"), 1);
+        AnswerMatcher csharp = AnswerMatcher.compile("open_ended", List.of("C#"), 1);
+
+        assertTrue(cpp.matches(" c++ "));
+        assertFalse(cpp.matches("C"));
+        assertFalse(cpp.matches("C#"));
+        assertTrue(csharp.matches("c#"));
+        assertFalse(csharp.matches("C"));
+    }
+
+    @Test
+    void openEnded_foldsAnswerLongerThanEveryVariant() {
+        AnswerMatcher matcher = AnswerMatcher.compile("open_ended", List.of("useMemo"), 1);
+
+        assertTrue(matcher.matches("useMemo" + " ".repeat(1_000_000)));
+        assertFalse(matcher.matches("useMemo".repeat(100_000)));
+    }
+
+    @Test
+    void multipleChoice_requiresExactlyTheCorrectOptions() {
+        AnswerMatcher matcher = AnswerMatcher.compile("multiple_choice", List.of("<main>", "<article>"), 1);
+
+        assertTrue(matcher.matches("<main>\n<article>\n"));
+        assertTrue(matcher.matches("<ARTICLE>\n <main> "));
+        assertFalse(matcher.matches("<main>\n<article>\n<div>"));
+        assertFalse(matcher.matches("<mains>"));
+        assertFalse(matcher.matches("\n"));
+    }
+
+    @Test
+    void multipleChoice_rejectsPartialSelection() {
+        AnswerMatcher matcher = AnswerMatcher.compile("multiple_choice", List.of("A", "B", "C"), 1);
+
+        assertFalse(matcher.matches("A"));
+        assertFalse(matcher.matches("A\nC"));
+        assertTrue(matcher.matches("C\nA\nB"));
+    }
+
+    @Test
+    void multipleChoice_countsDuplicatedSelectionOnce() {
+        AnswerMatcher matcher = AnswerMatcher.compile("multiple_choice", List.of("A", "B"), 1);
+
+        assertFalse(matcher.matches("A\nA"));
+        assertTrue(matcher.matches("A\nb\nA"));
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.trivia.service;
+
+import com.example.trivia.model.Answer;
+import com.example.trivia.repository.AnswerRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnswerWriterTest {
+    // Long enough that the scheduled flush never runs during a test
+    private static final long FLUSH_INTERVAL_MILLIS = 3_600_000;
+    private static final List<String> UNWRITTEN_KEYS = List.of("rounds:1:unwritten-answers");
+
+    @Mock
+    private AnswerRepository answerRepo;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOps;
+
+    private AnswerWriter answerWriter;
+
+    private final List<Answer> dropped = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        if (answerWriter != null) {
+            answerWriter.shutdown();
+        }
+    }
+
+    private static Answer answer(long playerId) {
+        Answer answer = new Answer();
+        answer.setRoundId(1L);
+        answer.setQuestionId(1L);
+        answer.setPlayerId(playerId);
+        answer.setTeamId(1L);
+        answer.setAnswer("answer " + playerId);
+        answer.setCreatedAt(Instant.now());
+        return answer;
+    }
+
+    private Consumer<Optional<Answer>> recordDropped(Answer answer) {
+        return stored -> dropped.add(answer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubBatchUpdate(List<Integer> batchSizes) {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    batchSizes.add(((Collection<?>) invocation.getArgument(1)).size());
+                    return new int[0][];
+                });
+    }
+
+    @Test
+    void submit_flushesWhenBatchFills() {
+        answerWriter = new AnswerWriter(answerRepo, jdbcTemplate, redisTemplate, 2, 10, FLUSH_INTERVAL_MILLIS);
+        List<Integer> batchSizes = new ArrayList<>();
+        stubBatchUpdate(batchSizes);
+
+        Answer first = answer(1);
+        Answer second = answer(2);
+
+        answerWriter.submit(first, recordDropped(first));
+        verifyNoInteractions(jdbcTemplate);
+        answerWriter.submit(second, recordDropped(second));
+
+        verify(jdbcTemplate, timeout(5000)).batchUpdate(anyString(), anyList(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(List.of(2), batchSizes);
+        verifyNoInteractions(answerRepo);
+        assertTrue(dropped.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void submit_countsAnswerAsUnwrittenUntilItIsWritten() {
+        answerWriter = new AnswerWriter(answerRepo, jdbcTemplate, redisTemplate, 10, 10, FLUSH_INTERVAL_MILLIS);
+        Answer answer = answer(1);
+
+        answerWriter.submit(answer, recordDropped(answer));
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(UNWRITTEN_KEYS), eq("86400"));
+        verify(redisTemplate, never()).execute(any(RedisScript.class), eq(UNWRITTEN_KEYS), eq("1"));
+
+        answerWriter.flush();
+        verify(redisTemplate).execute(any(RedisScript.class), eq(UNWRITTEN_KEYS), eq("1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void submit_dropsAndThrowsWhenAnswerCannotBeCounted() {
+        answerWriter = new AnswerWriter(answerRepo, jdbcTemplate, redisTemplate, 10, 10, FLUSH_INTERVAL_MILLIS);
+        when(redisTemplate.execute(any(RedisScript.class), eq(UNWRITTEN_KEYS), eq("86400")))
+                .thenThrow(new RedisConnectionFailureException("connection refused"));
+        Answer answer = answer(1);
+
+        assertThrows(RedisConnectionFailureException.class, () -> answerWriter.submit(answer, recordDropped(answer)));
+        assertEquals(List.of(answer), dropped);
+
+        // Never queued
+        answerWriter.flush();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void getUnwrittenCount_readsCountOfEveryNode() {
+        answerWriter = new AnswerWriter(answerRepo, jdbcTemplate, redisTemplate, 10, 10, FLUSH_INTERVAL_MILLIS);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.get("rounds:1:unwritten-answers")).thenReturn("3");
+        when(valueOps.get("rounds:2:unwritten-answers")).thenReturn(null);
+
+        assertEquals(3, answerWriter.getUnwrittenCount(1L));
+        assertEquals(0, answerWriter.getUnwrittenCount(2L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void submit_writesSynchronouslyWhenQueueIsFull() {
+        answerWriter = new AnswerWriter(answerRepo, jdbcTemplate, redisTemplate, 10, 1, FLUSH_INTERVAL_MILLIS);
+        Answer queued = answer(1);
+        Answer overflow = answer(2);
+
+        answerWriter.submit(queued, recordDropped(queued));
+        answerWriter.submit(overflow, recordDropped(overflow));
+
+        verify(answerRepo).upsert(1L, 1L, 2L, 1L, overflow.getCreatedAt(), "answer 2");
+        verifyNoInteractions(jdbcTemplate);
+        verify(redisTemplate).execute(any(RedisScript.class), eq(UNWRITTEN_KEYS), eq("1"));
+    }
+
+    @Test
+    void submit_dropsAndThrowsWhenSynchronousWriteFails() {
+        answerWriter = new AnswerWriter(answerRepo, jdbcTemplate, redisTemplate, 10, 1, FLUSH_INTERVAL_MILLIS);
+        Answer queued = answer(1);
+        Answer overflow = answer(2);
+        when(answerRepo.upsert(1L, 1L, 2L, 1L, overflow.getCreatedAt(), "answer 2"))
+                .thenThrow(new DataIntegrityViolationException("round deleted"));
+
+        answerWriter.submit(queued, recordDropped(queued));
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> answerWriter.submit(overflow, recordDropped(overflow)));
+        assertEquals(List.of(overflow), dropped);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_writesOneByOneAndDropsAnswersThatCannotBeWritten() {
+        answerWriter = new AnswerWriter(answerRepo, jdbcTemplate, redisTemplate, 10, 10, FLUSH_INTERVAL_MILLIS);
+        Answer written = answer(1);
+        Answer rejected = answer(2);
+        Answer stored = answer(2);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("round deleted"));
+        when(answerRepo.upsert(any(), any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            if (rejected.getPlayerId().equals(invocation.getArgument(2))) {
+                throw new DataIntegrityViolationException("round deleted");
+            }
+            return written;
+        });
+        when(answerRepo.findByRoundIdAndQuestionIdAndPlayerId(1L, 1L, 2L)).thenReturn(Optional.of(stored));
+        List<Optional<Answer>> storedAnswers = new ArrayList<>();
+
+        answerWriter.submit(written, recordDropped(written));
+        answerWriter.submit(rejected, storedAnswers::add);
+        answerWriter.flush();
+
+        verify(answerRepo).upsert(1L, 1L, 1L, 1L, written.getCreatedAt(), "answer 1");
+        assertEquals(List.of(Optional.of(stored)), storedAnswers);
+        assertTrue(dropped.isEmpty());
+        // The dropped answer is no longer counted as unwritten either
+        verify(redisTemplate).execute(any(RedisScript.class), eq(UNWRITTEN_KEYS), eq("2"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_keepsBatchWhileDatabaseIsUnavailable() {
+        answerWriter = new AnswerWriter(answerRepo, jdbcTemplate, redisTemplate, 10, 10, FLUSH_INTERVAL_MILLIS);
+        List<Integer> batchSizes = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new CannotGetJdbcConnectionException("connection refused"))
+                .thenAnswer(invocation -> {
+                    batchSizes.add(((Collection<?>) invocation.getArgument(1)).size());
+                    return new int[0][];
+                });
+        Answer first = answer(1);
+        Answer second = answer(2);
+
+        answerWriter.submit(first, recordDropped(first));
+        answerWriter.submit(second, recordDropped(second));
+        answerWriter.flush();
+
+        // Neither written one by one nor dropped, but written with the next flush
+        verifyNoInteractions(answerRepo);
+        assertTrue(dropped.isEmpty());
+        verify(redisTemplate, never()).execute(any(RedisScript.class), eq(UNWRITTEN_KEYS), eq("2"));
+
+        answerWriter.flush();
+        assertEquals(List.of(2), batchSizes);
+        assertTrue(dropped.isEmpty());
+        verify(redisTemplate).execute(any(RedisScript.class), eq(UNWRITTEN_KEYS), eq("2"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_dropsMalformedAnswerAndWritesTheRest() {
+        answerWriter = new AnswerWriter(answerRepo, jdbcTemplate, redisTemplate, 10, 10, FLUSH_INTERVAL_MILLIS);
+        Answer written = answer(1);
+        Answer malformed = answer(2);
+        malformed.setTeamId(null);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new NullPointerException("team_id"));
+        when(answerRepo.upsert(any(), any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            if (invocation.getArgument(3) == null) {
+                throw new NullPointerException("team_id");
+            }
+            return written;
+        });
+
+        answerWriter.submit(written, recordDropped(written));
+        answerWriter.submit(malformed, recordDropped(malformed));
+        answerWriter.flush();
+
+        verify(answerRepo).upsert(1L, 1L, 1L, 1L, written.getCreatedAt(), "answer 1");
+        assertEquals(List.of(malformed), dropped);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scheduledFlush_keepsRunningAfterUnexpectedFailure() throws Exception {
+        answerWriter = new AnswerWriter(answerRepo, jdbcTemplate, redisTemplate, 10, 10, 10);
+        CountDownLatch written = new CountDownLatch(1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new IllegalStateException("pool suspended"))
+                .thenAnswer(invocation -> {
+                    written.countDown();
+                    return new int[0][];
+                });
+        // The retry of the first flush finds the database unavailable, so the batch is kept
+        when(answerRepo.upsert(any(), any(), any(), any(), any(), any()))
+                .thenThrow(new CannotGetJdbcConnectionException("connection refused"));
+        Answer answer = answer(1);
+
+        answerWriter.submit(answer, recordDropped(answer));
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertTrue(dropped.isEmpty());
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.trivia.service;
+
+import com.example.trivia.model.Game;
+import com.example.trivia.model.Room;
+import com.example.trivia.model.Round;
+import com.example.trivia.repository.GameRepository;
+import com.example.trivia.repository.RoomRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GameServiceTest {
+    @Mock
+    private GameRepository gameRepo;
+
+    @Mock
+    private RoomRepository roomRepo;
+
+    @Mock
+    private QuestionCatalog questionCatalog;
+
+    @Mock
+    private RoundScheduler roundScheduler;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private GameService gameService;
+
+    private Room testRoom;
+
+    @BeforeEach
+    void setUp() {
+        testRoom = new Room();
+        testRoom.setId(1L);
+        testRoom.setCreatedAt(Instant.now());
+        testRoom.setHostId(1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createGame_persistsGameWithConstantNumberOfStatements() throws Exception {
+        when(gameRepo.save(any(Game.class))).thenAnswer(invocation -> {
+            Game g = invocation.getArgument(0);
+            g.setId(1L);
+            return g;
+        });
+        when(questionCatalog.sample(6)).thenReturn(List.of(1L, 2L, 3L, 4L, 5L, 6L));
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class),
+                any(KeyHolder.class))).thenAnswer(invocation -> {
+                    KeyHolder keyHolder = invocation.getArgument(2);
+                    for (long id = 10; id < 13; id++) {
+                        keyHolder.getKeyList().add(Map.of("id", id));
+                    }
+                    return new int[] { 1, 1, 1 };
+                });
+
+        Game game = gameService.createGame(testRoom, 3, Duration.ofSeconds(60), 2);
+
+        assertEquals(1L, game.getId());
+        assertEquals(Duration.ofSeconds(180), Duration.between(game.getCreatedAt(), game.getEndedAt()));
+        assertEquals(1L, testRoom.getGameId());
+
+        // One statement for the game, one for the room and one batch each for the rounds and their questions,
+        // whatever the size of the game. Only the game of the room is written, so a concurrent host change is kept.
+        verify(gameRepo, times(1)).save(any(Game.class));
+        verify(roomRepo, times(1)).setGameId(1L, 1L);
+        verify(roomRepo, never()).save(any(Room.class));
+
+        ArgumentCaptor<BatchPreparedStatementSetter> roundSetter =
+                ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(any(PreparedStatementCreator.class), roundSetter.capture(),
+                any(KeyHolder.class));
+        assertEquals(3, roundSetter.getValue().getBatchSize());
+
+        ArgumentCaptor<Collection<Object>> roundQuestions = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<ParameterizedPreparedStatementSetter<Object>> roundQuestionSetter =
+                ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), roundQuestions.capture(), eq(6),
+                roundQuestionSetter.capture());
+        assertEquals(6, roundQuestions.getValue().size());
+        verifyNoMoreInteractions(jdbcTemplate);
+
+        PreparedStatement ps = mock(PreparedStatement.class);
+        for (Object roundQuestion : roundQuestions.getValue()) {
+            roundQuestionSetter.getValue().setValues(ps, roundQuestion);
+        }
+        verify(ps, times(2)).setLong(1, 10L);
+        verify(ps, times(2)).setLong(1, 11L);
+        verify(ps, times(2)).setLong(1, 12L);
+        verify(ps).setLong(2, 6L);
+
+        // Without a transaction, the rounds are scheduled right away
+        ArgumentCaptor<List<Round>> scheduledRounds = ArgumentCaptor.forClass(List.class);
+        verify(roundScheduler).schedule(eq(game), scheduledRounds.capture());
+        assertEquals(List.of(10L, 11L, 12L), scheduledRounds.getValue().stream().map(Round::getId).toList());
+        assertEquals(game.getCreatedAt(), scheduledRounds.getValue().get(0).getCreatedAt());
+        assertEquals(game.getEndedAt(), scheduledRounds.getValue().get(2).getEndedAt());
+    }
+}
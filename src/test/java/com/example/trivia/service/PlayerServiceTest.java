@@ -0,0 +1,36 @@
+package com.example.trivia.service;
+
+import com.example.trivia.repository.PlayerRepository;
+import com.example.trivia.repository.RoomRepository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlayerServiceTest {
+    @Mock
+    private PlayerRepository playerRepo;
+
+    @Mock
+    private RoomRepository roomRepo;
+
+    @InjectMocks
+    private PlayerService playerService;
+
+    @Test
+    void deletePlayer_assignsSuccessorAfterDelete() {
+        playerService.deletePlayer(1L, 1L);
+
+        // The foreign key clears the host on delete, so the successor is only picked afterwards
+        InOrder inOrder = inOrder(playerRepo, roomRepo);
+        inOrder.verify(playerRepo).deleteById(1L);
+        inOrder.verify(roomRepo).assignVacantHost(1L);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.trivia.service;
+
+import com.example.trivia.component.JwtKeyLocator;
+import com.example.trivia.dto.PlayerMembership;
+import com.example.trivia.model.Player;
+import com.example.trivia.repository.PlayerRepository;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlayerTokenServiceTest {
+    private static final String SECRET = "xHMaro8aNn82Lo2y5zyiBmOz2NuHyXtauex28293dXY=";
+
+    @Mock
+    private PlayerRepository playerRepo;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOps;
+
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private JwtKeyLocator jwtKeyLocator;
+    private PlayerTokenService playerTokenService;
+    private MessageListener versionListener;
+
+    @BeforeEach
+    void setUp() {
+        jwtKeyLocator = new JwtKeyLocator(SECRET);
+        playerTokenService = new PlayerTokenService(jwtKeyLocator, playerRepo, redisTemplate,
+                redisMessageListenerContainer);
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(redisMessageListenerContainer).addMessageListener(listener.capture(), any(ChannelTopic.class));
+        versionListener = listener.getValue();
+    }
+
+    private static Claims claims(long version) {
+        return Jwts.claims()
+                .subject("7")
+                .add("roomId", 1L)
+                .add("teamId", 2L)
+                .add("ver", version)
+                .build();
+    }
+
+    private void broadcast(String bump) {
+        versionListener.onMessage(new DefaultMessage("rooms:membership-versions".getBytes(StandardCharsets.UTF_8),
+                bump.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    @Test
+    void issue_readsVersionBeforeLoadingPlayer() {
+        Player player = new Player();
+        player.setId(7L);
+        player.setRoomId(1L);
+        player.setTeamId(2L);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.get("rooms:1:membership-version")).thenReturn("3");
+        when(playerRepo.findById(7L)).thenReturn(Optional.of(player));
+
+        String jwt = playerTokenService.issue(1L, 7L).orElseThrow();
+
+        Claims claims = Jwts.parser().keyLocator(jwtKeyLocator).build().parseSignedClaims(jwt).getPayload();
+        assertEquals("7", claims.getSubject());
+        assertEquals(2L, claims.get("teamId", Long.class));
+        assertEquals(3L, claims.get("ver", Long.class));
+        // A team change committed after the version was read makes the token stale, never current with the old team
+        InOrder inOrder = inOrder(valueOps, playerRepo);
+        inOrder.verify(valueOps).get("rooms:1:membership-version");
+        inOrder.verify(playerRepo).findById(7L);
+    }
+
+    @Test
+    void issue_returnsEmptyForPlayerOfAnotherRoom() {
+        Player player = new Player();
+        player.setId(7L);
+        player.setRoomId(2L);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.get("rooms:1:membership-version")).thenReturn(null);
+        when(playerRepo.findById(7L)).thenReturn(Optional.of(player));
+
+        assertTrue(playerTokenService.issue(1L, 7L).isEmpty());
+    }
+
+    @Test
+    void getMembership_vouchesForTokenOfCurrentVersion() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.get("rooms:1:membership-version")).thenReturn("3");
+
+        assertEquals(new PlayerMembership(7L, 1L, 2L), playerTokenService.getMembership(claims(3)));
+        assertNull(playerTokenService.getMembership(claims(2)));
+
+        // The version is cached, so Redis is read once
+        verify(valueOps, times(1)).get("rooms:1:membership-version");
+    }
+
+    @Test
+    void getMembership_ignoresTokenWithoutRoom() {
+        Claims claims = Jwts.claims().subject("7").build();
+
+        assertNull(playerTokenService.getMembership(claims));
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void bumpMembershipVersion_makesOlderTokensStaleOnEveryNode() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.increment("rooms:1:membership-version")).thenReturn(4L);
+
+        playerTokenService.bumpMembershipVersion(1L);
+
+        assertNull(playerTokenService.getMembership(claims(3)));
+        assertNotNull(playerTokenService.getMembership(claims(4)));
+        verify(redisTemplate).convertAndSend("rooms:membership-versions", "1:4");
+        verify(valueOps, never()).get(any());
+    }
+
+    @Test
+    void cacheVersion_neverRollsVersionBack() {
+        broadcast("1:6");
+        // A broadcast that arrives late must not make tokens of an older version current again
+        broadcast("1:5");
+
+        assertNotNull(playerTokenService.getMembership(claims(6)));
+        assertNull(playerTokenService.getMembership(claims(5)));
+        verifyNoInteractions(redisTemplate);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.trivia.service;
+
+import com.example.trivia.model.Question;
+import com.example.trivia.repository.QuestionRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuestionCatalogTest {
+    @Mock
+    private QuestionRepository questionRepo;
+
+    private QuestionCatalog questionCatalog;
+
+    @BeforeEach
+    void setUp() {
+        questionCatalog = new QuestionCatalog(questionRepo, JsonMapper.builder().build(), 1);
+    }
+
+    private static Question question(long id, String correctAnswer) {
+        Question question = new Question();
+        question.setId(id);
+        question.setType("multiple_choice");
+        question.setQuestion("Question " + id);
+        question.setOptions(List.of("a", "b"));
+        question.setCorrectAnswers(List.of(correctAnswer));
+        return question;
+    }
+
+    @Test
+    void writeJsonArray_hidesCorrectAnswersUnlessRevealed() {
+        when(questionRepo.findAll()).thenReturn(List.of(question(1L, "a"), question(2L, "b")));
+
+        String redacted = new String(questionCatalog.writeJsonArray(List.of(1L, 2L), false), StandardCharsets.UTF_8);
+        String revealed = new String(questionCatalog.writeJsonArray(List.of(1L, 2L), true), StandardCharsets.UTF_8);
+
+        assertTrue(redacted.startsWith("[{") && redacted.endsWith("}]"));
+        assertEquals(2, redacted.split("\"correctAnswers\":\\[]", -1).length - 1);
+        assertTrue(revealed.contains("\"correctAnswers\":[\"a\"]"));
+        assertTrue(revealed.contains("\"correctAnswers\":[\"b\"]"));
+        assertEquals(List.of("a"), questionCatalog.get(1L).correctAnswers());
+        verify(questionRepo, times(1)).findAll();
+    }
+
+    @Test
+    void get_reloadsOnceForUnknownQuestion() {
+        when(questionRepo.findAll())
+                .thenReturn(List.of(question(1L, "a")))
+                .thenReturn(List.of(question(1L, "a"), question(2L, "b")));
+
+        assertEquals(1, questionCatalog.size());
+        assertEquals(2L, questionCatalog.get(2L).id());
+        assertEquals(2, questionCatalog.size());
+        verify(questionRepo, times(2)).findAll();
+    }
+
+    @Test
+    void sample_drawsDistinctQuestions() {
+        when(questionRepo.findAll()).thenReturn(List.of(question(1L, "a"), question(2L, "b"), question(3L, "a")));
+
+        List<Long> sample = questionCatalog.sample(3);
+
+        assertEquals(3, new HashSet<>(sample).size());
+        assertThrows(IllegalArgumentException.class, () -> questionCatalog.sample(4));
+    }
+}
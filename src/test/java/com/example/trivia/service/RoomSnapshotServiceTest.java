@@ -0,0 +1,188 @@
+package com.example.trivia.service;
+
+import com.example.trivia.dto.RoomSnapshot;
+import com.example.trivia.model.Game;
+import com.example.trivia.model.QuestionRef;
+import com.example.trivia.model.Room;
+import com.example.trivia.model.Round;
+import com.example.trivia.repository.GameRepository;
+import com.example.trivia.repository.PlayerRepository;
+import com.example.trivia.repository.RoomRepository;
+import com.example.trivia.repository.TeamRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoomSnapshotServiceTest {
+    @Mock
+    private ActiveRoundCache activeRoundCache;
+
+    @Mock
+    private GameRepository gameRepo;
+
+    @Mock
+    private PlayerRepository playerRepo;
+
+    @Mock
+    private QuestionCatalog questionCatalog;
+
+    @Mock
+    private RoomRepository roomRepo;
+
+    @Mock
+    private SseService sseService;
+
+    @Mock
+    private TeamRepository teamRepo;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private RoomSnapshotService roomSnapshotService;
+
+    private Room testRoom;
+
+    @BeforeEach
+    void setUp() {
+        testRoom = new Room();
+        testRoom.setId(1L);
+        testRoom.setCreatedAt(Instant.now());
+    }
+
+    private static Round round(long id, Instant createdAt) {
+        Round round = new Round();
+        round.setId(id);
+        round.setGameId(1L);
+        round.setCreatedAt(createdAt);
+        round.setEndedAt(createdAt.plus(Duration.ofMinutes(1)));
+        return round;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getSnapshot_includesRedactedQuestionsOfLiveRound() {
+        Instant now = Instant.now();
+        Game game = new Game();
+        game.setId(1L);
+        game.setRoomId(1L);
+        testRoom.setGameId(1L);
+
+        Round ended = round(1L, now.minus(Duration.ofSeconds(90)));
+        Round live = round(2L, now.minus(Duration.ofSeconds(30)));
+        Round next = round(3L, now.plus(Duration.ofSeconds(30)));
+        live.getQuestions().add(new QuestionRef(5L));
+        live.getQuestions().add(new QuestionRef(4L));
+
+        when(sseService.getLastEventId("1")).thenReturn(42L);
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(playerRepo.findByRoomId(1L)).thenReturn(List.of());
+        when(teamRepo.findByRoomId(1L)).thenReturn(List.of());
+        when(gameRepo.findById(1L)).thenReturn(Optional.of(game));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(1L))).thenReturn(List.of(ended, live, next));
+        when(activeRoundCache.getRoundIfPresent(2L)).thenReturn(Optional.of(live));
+        when(questionCatalog.writeJsonArray(List.of(4L, 5L), false))
+                .thenReturn("[{\"id\":4},{\"id\":5}]".getBytes(StandardCharsets.UTF_8));
+
+        RoomSnapshot snapshot = roomSnapshotService.getSnapshot(1L).orElseThrow();
+
+        assertEquals(42L, snapshot.version());
+        assertEquals(game, snapshot.game());
+        assertEquals(3, snapshot.rounds().size());
+        assertEquals(2L, snapshot.currentRoundId());
+        assertEquals("[{\"id\":4},{\"id\":5}]", snapshot.questions());
+
+        // The version is read first, so no event before it is missing from the snapshot
+        InOrder inOrder = inOrder(sseService, roomRepo);
+        inOrder.verify(sseService).getLastEventId("1");
+        inOrder.verify(roomRepo).findById(1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getSnapshot_readsQuestionIdsOfUncachedRoundWithoutLoadingPlayersAgain() {
+        Instant now = Instant.now();
+        Game game = new Game();
+        game.setId(1L);
+        game.setRoomId(1L);
+        testRoom.setGameId(1L);
+        Round live = round(2L, now.minus(Duration.ofSeconds(30)));
+
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(playerRepo.findByRoomId(1L)).thenReturn(List.of());
+        when(teamRepo.findByRoomId(1L)).thenReturn(List.of());
+        when(gameRepo.findById(1L)).thenReturn(Optional.of(game));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(1L))).thenReturn(List.of(live));
+        when(activeRoundCache.getRoundIfPresent(2L)).thenReturn(Optional.empty());
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(2L))).thenReturn(List.of(4L, 5L));
+        when(questionCatalog.writeJsonArray(List.of(4L, 5L), false))
+                .thenReturn("[{\"id\":4},{\"id\":5}]".getBytes(StandardCharsets.UTF_8));
+
+        RoomSnapshot snapshot = roomSnapshotService.getSnapshot(1L).orElseThrow();
+
+        assertEquals("[{\"id\":4},{\"id\":5}]", snapshot.questions());
+        verify(playerRepo, times(1)).findByRoomId(1L);
+        verify(activeRoundCache, never()).getRound(any());
+        verify(activeRoundCache, never()).get(any());
+    }
+
+    @Test
+    void getSnapshot_hasNoRoundsWithoutGame() {
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        when(playerRepo.findByRoomId(1L)).thenReturn(List.of());
+        when(teamRepo.findByRoomId(1L)).thenReturn(List.of());
+
+        RoomSnapshot snapshot = roomSnapshotService.getSnapshot(1L).orElseThrow();
+
+        assertNull(snapshot.game());
+        assertTrue(snapshot.rounds().isEmpty());
+        assertNull(snapshot.currentRoundId());
+        assertNull(snapshot.questions());
+        verifyNoInteractions(gameRepo, jdbcTemplate, activeRoundCache);
+    }
+
+    @Test
+    void getSnapshot_returnsEmptyWhenRoomNotFound() {
+        when(roomRepo.findById(1L)).thenReturn(Optional.empty());
+
+        assertTrue(roomSnapshotService.getSnapshot(1L).isEmpty());
+        verifyNoInteractions(playerRepo, teamRepo);
+    }
+
+    @Test
+    void getSnapshot_loadsNothingElseWhenAccessIsDenied() {
+        testRoom.setCode("TEST123");
+        when(roomRepo.findById(1L)).thenReturn(Optional.of(testRoom));
+        ResponseStatusException denied = new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> roomSnapshotService.getSnapshot(1L, room -> {
+                    throw denied;
+                }));
+
+        assertSame(denied, ex);
+        verifyNoInteractions(playerRepo, teamRepo, gameRepo, jdbcTemplate, activeRoundCache);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.trivia.service;
+
+import com.example.trivia.model.Game;
+import com.example.trivia.model.Round;
+import com.example.trivia.repository.GameRepository;
+import com.example.trivia.repository.RoundRepository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoomVersionServiceTest {
+    @Mock
+    private GameRepository gameRepo;
+
+    @Mock
+    private RoundRepository roundRepo;
+
+    @Mock
+    private SseService sseService;
+
+    @InjectMocks
+    private RoomVersionService roomVersionService;
+
+    @Test
+    void getETag_isWeakTagOfRoomVersion() {
+        when(sseService.getVersion("1")).thenReturn("1700000000000-7");
+
+        assertEquals("W/\"1-1700000000000-7\"", roomVersionService.getETag(1L));
+    }
+
+    @Test
+    void getETag_isNullWhenVersionIsUnknown() {
+        when(sseService.getVersion("1")).thenReturn(null);
+        when(sseService.getVersion("2")).thenThrow(new RedisConnectionFailureException("Redis unavailable"));
+
+        assertNull(roomVersionService.getETag(1L));
+        assertNull(roomVersionService.getETag(2L));
+    }
+
+    @Test
+    void findRoomIdOfRound_loadsRoomOfRoundOnce() {
+        Round round = new Round();
+        round.setId(3L);
+        round.setGameId(2L);
+        Game game = new Game();
+        game.setId(2L);
+        game.setRoomId(1L);
+        when(roundRepo.findById(3L)).thenReturn(Optional.of(round));
+        when(gameRepo.findById(2L)).thenReturn(Optional.of(game));
+
+        assertEquals(Optional.of(1L), roomVersionService.findRoomIdOfRound(3L));
+        assertEquals(Optional.of(1L), roomVersionService.findRoomIdOfRound(3L));
+        assertEquals(Optional.of(1L), roomVersionService.findRoomIdOfGame(2L));
+
+        verify(roundRepo, times(1)).findById(3L);
+        verify(gameRepo, times(1)).findById(2L);
+    }
+
+    @Test
+    void findRoomIdOfGame_isEmptyWhenGameNotFound() {
+        when(gameRepo.findById(2L)).thenReturn(Optional.empty());
+
+        assertTrue(roomVersionService.findRoomIdOfGame(2L).isEmpty());
+        assertTrue(roomVersionService.findRoomIdOfGame(2L).isEmpty());
+        verify(gameRepo, times(2)).findById(2L);
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.trivia.service;
+
+import com.example.trivia.model.Answer;
+import com.example.trivia.model.QuestionRef;
+import com.example.trivia.model.Round;
+import com.example.trivia.repository.AnswerRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoundResultsCacheTest {
+    @Mock
+    private AnswerRepository answerRepo;
+
+    @Mock
+    private AnswerWriter answerWriter;
+
+    @Mock
+    private QuestionCatalog questionCatalog;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private RoundResultsCache roundResultsCache;
+
+    private Round testRound;
+
+    @BeforeEach
+    void setUp() {
+        roundResultsCache = new RoundResultsCache(answerRepo, answerWriter, jsonMapper, questionCatalog, 10_000, 60);
+
+        testRound = new Round();
+        testRound.setId(1L);
+        testRound.setGameId(1L);
+        testRound.setCreatedAt(Instant.now().minus(Duration.ofMinutes(2)));
+        testRound.setEndedAt(Instant.now().minus(Duration.ofMinutes(1)));
+        testRound.getQuestions().add(new QuestionRef(1L));
+    }
+
+    private static Answer answer(long id, long teamId, String text) {
+        Answer answer = new Answer();
+        answer.setId(id);
+        answer.setRoundId(1L);
+        answer.setQuestionId(1L);
+        answer.setPlayerId(id);
+        answer.setTeamId(teamId);
+        answer.setAnswer(text);
+        answer.setCreatedAt(Instant.now().minus(Duration.ofMinutes(1)));
+        return answer;
+    }
+
+    private void stubQuestion() {
+        List<String> correctAnswers = List.of("a");
+        when(questionCatalog.get(1L)).thenReturn(new QuestionCatalog.Entry(1L, "multiple_choice", List.of("a", "b"),
+                correctAnswers, AnswerMatcher.compile("multiple_choice", correctAnswers, 1),
+                "{\"id\":1}".getBytes(StandardCharsets.UTF_8),
+                "{\"id\":1,\"correctAnswers\":[\"a\"]}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void get_gradesAnswersAndCountsCorrectAnswersByTeam() {
+        stubQuestion();
+        when(answerRepo.findByRoundId(1L)).thenReturn(List.of(answer(1L, 1L, "a"), answer(2L, 1L, "b"),
+                answer(3L, 2L, "a")));
+
+        RoundResultsCache.Results results = roundResultsCache.get(testRound).orElseThrow();
+
+        JsonNode json = jsonMapper.readTree(results.json());
+        JsonNode question = json.get("questions").get(0);
+        assertEquals(1, question.get("question").get("id").asInt());
+        assertEquals("a", question.get("question").get("correctAnswers").get(0).asString());
+        assertTrue(question.get("answers").get(0).get("correct").asBoolean());
+        assertFalse(question.get("answers").get(1).get("correct").asBoolean());
+        assertEquals(2, question.get("teams").get(0).get("answers").asInt());
+        assertEquals(1, question.get("teams").get(0).get("correctAnswers").asInt());
+        assertEquals(1, question.get("teams").get(1).get("correctAnswers").asInt());
+        assertEquals(3, jsonMapper.readTree(results.answers().get(1L)).size());
+        assertSame(results, roundResultsCache.getIfPresent(1L).orElseThrow());
+        verify(answerWriter).flush();
+    }
+
+    @Test
+    void get_computesResultsOnceForConcurrentCallers() throws Exception {
+        stubQuestion();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(answerRepo.findByRoundId(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return List.of(answer(1L, 1L, "a"));
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<RoundResultsCache.Results>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> roundResultsCache.get(testRound).orElseThrow()));
+            }
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            release.countDown();
+
+            RoundResultsCache.Results first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<RoundResultsCache.Results> future : futures) {
+                assertSame(first, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(answerRepo, times(1)).findByRoundId(1L);
+    }
+
+    @Test
+    void get_retriesAfterFailure() {
+        stubQuestion();
+        when(answerRepo.findByRoundId(1L))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(List.of());
+
+        assertThrows(IllegalStateException.class, () -> roundResultsCache.get(testRound));
+        assertTrue(roundResultsCache.getIfPresent(1L).isEmpty());
+        assertNotNull(roundResultsCache.get(testRound).orElseThrow().json());
+    }
+
+    @Test
+    void get_rejectsRoundThatHasNotEnded() {
+        testRound.setEndedAt(Instant.now().plus(Duration.ofMinutes(1)));
+
+        assertThrows(IllegalArgumentException.class, () -> roundResultsCache.get(testRound));
+        verifyNoInteractions(answerRepo);
+    }
+
+    @Test
+    void get_returnsNothingWhileAnswersOfAnotherNodeAreUnwritten() {
+        testRound.setEndedAt(Instant.now());
+        stubQuestion();
+        when(answerWriter.getUnwrittenCount(1L)).thenReturn(2L, 2L, 0L);
+        when(answerRepo.findByRoundId(1L)).thenReturn(List.of());
+
+        assertTrue(roundResultsCache.get(testRound).isEmpty());
+        verifyNoInteractions(answerRepo);
+
+        // Once the other node wrote them
+        assertNotNull(roundResultsCache.get(testRound).orElseThrow().json());
+    }
+
+    @Test
+    void get_writesAnswersQueuedOnThisNodeRightAway() {
+        testRound.setEndedAt(Instant.now());
+        stubQuestion();
+        when(answerWriter.getUnwrittenCount(1L)).thenReturn(1L, 0L);
+        when(answerRepo.findByRoundId(1L)).thenReturn(List.of());
+
+        assertTrue(roundResultsCache.get(testRound).isPresent());
+
+        InOrder inOrder = inOrder(answerWriter, answerRepo);
+        inOrder.verify(answerWriter).flush();
+        inOrder.verify(answerWriter).getUnwrittenCount(1L);
+        inOrder.verify(answerRepo).findByRoundId(1L);
+    }
+
+    @Test
+    void get_givesUpOnAnswersOfNodeThatWentAway() {
+        stubQuestion();
+        when(answerRepo.findByRoundId(1L)).thenReturn(List.of());
+
+        // The round ended longer ago than the results wait for unwritten answers
+        assertTrue(roundResultsCache.get(testRound).isPresent());
+        verify(answerWriter, never()).getUnwrittenCount(any());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.trivia.service;
+
+import com.example.trivia.dto.RoundEvent;
+import com.example.trivia.model.Game;
+import com.example.trivia.model.QuestionRef;
+import com.example.trivia.model.Round;
+import com.example.trivia.repository.GameRepository;
+import com.example.trivia.repository.RoundRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoundSchedulerTest {
+    private static final List<String> KEYS = List.of("rounds:schedule", "rounds:in-flight");
+
+    @Mock
+    private ActiveRoundCache activeRoundCache;
+
+    @Mock
+    private GameRepository gameRepo;
+
+    @Mock
+    private QuestionCatalog questionCatalog;
+
+    @Mock
+    private RoundRepository roundRepo;
+
+    @Mock
+    private ScoringService scoringService;
+
+    @Mock
+    private SseService sseService;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOps;
+
+    private RoundScheduler roundScheduler;
+
+    private Game testGame;
+    private Round testRound;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+        roundScheduler = new RoundScheduler(activeRoundCache, gameRepo, questionCatalog, roundRepo,
+                scoringService, sseService, redisTemplate, Duration.ofHours(1).toMillis());
+
+        Instant createdAt = Instant.now().minusSeconds(120);
+        testGame = new Game();
+        testGame.setId(1L);
+        testGame.setRoomId(2L);
+        testGame.setCreatedAt(createdAt);
+        testGame.setEndedAt(createdAt.plusSeconds(60));
+
+        testRound = new Round();
+        testRound.setId(3L);
+        testRound.setGameId(1L);
+        testRound.setCreatedAt(createdAt);
+        testRound.setEndedAt(createdAt.plusSeconds(60));
+        testRound.getQuestions().add(new QuestionRef(4L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        roundScheduler.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void schedule_firesEveryTransitionClaimedByThisNode() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(KEYS), eq("round-started:3"), anyString()))
+                .thenReturn(0L);
+        when(redisTemplate.execute(any(RedisScript.class), eq(KEYS), eq("round-ended:3"), anyString()))
+                .thenReturn(1L);
+        when(redisTemplate.execute(any(RedisScript.class), eq(KEYS), eq("game-ended:1"), anyString()))
+                .thenReturn(1L);
+        when(roundRepo.findById(3L)).thenReturn(Optional.of(testRound));
+        when(gameRepo.findById(1L)).thenReturn(Optional.of(testGame));
+        when(questionCatalog.writeJsonArray(List.of(4L), true)).thenReturn("[]".getBytes(StandardCharsets.UTF_8));
+
+        roundScheduler.schedule(testGame, List.of(testRound));
+
+        ArgumentCaptor<Set<ZSetOperations.TypedTuple<String>>> transitions = ArgumentCaptor.forClass(Set.class);
+        verify(zSetOps).add(eq("rounds:schedule"), transitions.capture());
+        assertEquals(3, transitions.getValue().size());
+
+        // The round start was claimed by another node
+        ArgumentCaptor<RoundEvent> roundEnded = ArgumentCaptor.forClass(RoundEvent.class);
+        verify(sseService, timeout(1000)).publish(eq("2"), eq("round-ended"), roundEnded.capture());
+        verify(scoringService, timeout(1000)).closeRound(testRound, testGame);
+        verify(sseService, timeout(1000)).publish("2", "game-ended", 1L);
+        verify(sseService, never()).publish(eq("2"), eq("round-started"), any());
+        verifyNoInteractions(activeRoundCache);
+
+        assertEquals(3L, roundEnded.getValue().id());
+        assertEquals("[]", roundEnded.getValue().questions());
+
+        // The leases of the fired transitions are released
+        verify(zSetOps, timeout(1000)).remove("rounds:in-flight", "round-ended:3");
+        verify(zSetOps, timeout(1000)).remove("rounds:in-flight", "game-ended:1");
+        verify(zSetOps, never()).remove("rounds:in-flight", "round-started:3");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void schedule_keepsLeaseOfTransitionThatFailedToFire() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(KEYS), anyString(), anyString())).thenReturn(1L);
+        when(activeRoundCache.get(3L)).thenReturn(Optional.empty());
+        when(roundRepo.findById(3L)).thenThrow(new QueryTimeoutException("timeout"));
+        when(gameRepo.findById(1L)).thenReturn(Optional.of(testGame));
+
+        roundScheduler.schedule(testGame, List.of(testRound));
+
+        verify(sseService, timeout(1000)).publish("2", "game-ended", 1L);
+        verify(zSetOps, timeout(1000)).remove("rounds:in-flight", "game-ended:1");
+        verify(zSetOps, timeout(1000)).remove("rounds:in-flight", "round-started:3");
+        // The round end stays in flight until its lease expires, when polling moves it back to the schedule
+        verify(zSetOps, after(200).never()).remove("rounds:in-flight", "round-ended:3");
+        verifyNoInteractions(scoringService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void poll_firesTransitionsWhoseLeaseExpired() {
+        roundScheduler.shutdown();
+        roundScheduler = new RoundScheduler(activeRoundCache, gameRepo, questionCatalog, roundRepo,
+                scoringService, sseService, redisTemplate, 10);
+        // Polling first moves the expired leases back to the schedule, then claims what is due
+        when(redisTemplate.execute(any(RedisScript.class), eq(KEYS), anyString(), eq("100"))).thenReturn(1L);
+        when(zSetOps.rangeByScore(eq("rounds:schedule"), eq(0.0), anyDouble(), eq(0L), eq(100L)))
+                .thenReturn(Set.of("game-ended:1"));
+        when(redisTemplate.execute(any(RedisScript.class), eq(KEYS), eq("game-ended:1"), anyString()))
+                .thenReturn(1L, 0L);
+        when(gameRepo.findById(1L)).thenReturn(Optional.of(testGame));
+
+        verify(sseService, timeout(1000)).publish("2", "game-ended", 1L);
+        verify(zSetOps, timeout(1000)).remove("rounds:in-flight", "game-ended:1");
+    }
+}
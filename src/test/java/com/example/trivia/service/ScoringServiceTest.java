@@ -0,0 +1,180 @@
+package com.example.trivia.service;
+
+import com.example.trivia.dto.Leaderboard;
+import com.example.trivia.model.Answer;
+import com.example.trivia.model.Game;
+import com.example.trivia.model.Round;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScoringServiceTest {
+    private static final List<String> GRADE_KEYS = List.of(
+            "rounds:3:grades",
+            "rounds:3:scores:players",
+            "rounds:3:scores:teams",
+            "rounds:3:closed",
+            "games:1:scores:players",
+            "games:1:scores:teams");
+
+    @Mock
+    private QuestionCatalog questionCatalog;
+
+    @Mock
+    private SseService sseService;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOps;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOps;
+
+    @InjectMocks
+    private ScoringService scoringService;
+
+    private Game testGame;
+    private Round testRound;
+
+    @BeforeEach
+    void setUp() {
+        testGame = new Game();
+        testGame.setId(1L);
+        testGame.setRoomId(2L);
+
+        testRound = new Round();
+        testRound.setId(3L);
+        testRound.setGameId(1L);
+    }
+
+    private static Answer answer(String text, Instant createdAt) {
+        Answer answer = new Answer();
+        answer.setRoundId(3L);
+        answer.setQuestionId(5L);
+        answer.setPlayerId(7L);
+        answer.setTeamId(8L);
+        answer.setAnswer(text);
+        answer.setCreatedAt(createdAt);
+        return answer;
+    }
+
+    private void stubQuestion() {
+        List<String> correctAnswers = List.of("useMemo");
+        when(questionCatalog.get(5L)).thenReturn(new QuestionCatalog.Entry(5L, "open_ended", List.of(),
+                correctAnswers, AnswerMatcher.compile("open_ended", correctAnswers, 1),
+                "{\"id\":5}".getBytes(StandardCharsets.UTF_8),
+                "{\"id\":5,\"correctAnswers\":[\"useMemo\"]}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void grade_recordsPointOfCorrectAnswer() {
+        stubQuestion();
+        Instant createdAt = Instant.now();
+
+        scoringService.grade(answer("usememo", createdAt), testRound, testGame);
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(GRADE_KEYS), eq("5:7"),
+                eq(String.valueOf(createdAt.toEpochMilli())), eq("1"), eq("7"), eq("8"), eq("86400"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void grade_recordsNoPointOfWrongAnswer() {
+        stubQuestion();
+        Instant createdAt = Instant.now();
+
+        scoringService.grade(answer("useCallback", createdAt), testRound, testGame);
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(GRADE_KEYS), eq("5:7"),
+                eq(String.valueOf(createdAt.toEpochMilli())), eq("0"), eq("7"), eq("8"), eq("86400"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reconcile_gradesStoredAnswerInPlaceOfDroppedOne() {
+        stubQuestion();
+        Instant storedAt = Instant.now().minusSeconds(10);
+        Instant droppedAt = Instant.now();
+
+        scoringService.reconcile(answer("useCallback", droppedAt), answer("useMemo", storedAt), testRound, testGame);
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(GRADE_KEYS), eq("5:7"),
+                eq(String.valueOf(droppedAt.toEpochMilli())), eq(String.valueOf(storedAt.toEpochMilli())), eq("1"),
+                eq("7"), eq("8"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reconcile_takesBackGradeWhenNoAnswerIsStored() {
+        Instant droppedAt = Instant.now();
+
+        scoringService.reconcile(answer("useMemo", droppedAt), null, testRound, testGame);
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(GRADE_KEYS), eq("5:7"),
+                eq(String.valueOf(droppedAt.toEpochMilli())), eq(""), eq("0"), eq("7"), eq("8"));
+        verifyNoInteractions(questionCatalog);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void closeRound_publishesLeaderboardOnlyOnce() {
+        when(redisTemplate.execute(any(RedisScript.class), any(List.class), eq("86400"))).thenReturn(1L, 0L);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+        Set<ZSetOperations.TypedTuple<String>> players = new LinkedHashSet<>(List.of(
+                ZSetOperations.TypedTuple.of("7", 3.0),
+                ZSetOperations.TypedTuple.of("9", 1.0)));
+        when(zSetOps.reverseRangeWithScores("games:1:scores:players", 0, 9)).thenReturn(players);
+        when(zSetOps.reverseRangeWithScores("games:1:scores:teams", 0, 9)).thenReturn(Set.of());
+
+        scoringService.closeRound(testRound, testGame);
+        // Closed already, by this node or another one
+        scoringService.closeRound(testRound, testGame);
+
+        Leaderboard leaderboard = new Leaderboard(1L,
+                List.of(new Leaderboard.Score(7L, 3), new Leaderboard.Score(9L, 1)), List.of());
+        verify(sseService, times(1)).publish("2", "leaderboard-updated", leaderboard);
+    }
+
+    @Test
+    void getGradedAt_returnsSubmissionTimeOfLastGradedAnswer() {
+        when(redisTemplate.opsForHash()).thenReturn(hashOps);
+        when(hashOps.get("rounds:3:grades", "5:7")).thenReturn("1700000000123:1");
+        when(hashOps.get("rounds:3:grades", "5:8")).thenReturn(null);
+
+        assertEquals(Instant.ofEpochMilli(1700000000123L), scoringService.getGradedAt(3L, 5L, 7L));
+        assertNull(scoringService.getGradedAt(3L, 5L, 8L));
+    }
+
+    @Test
+    void isClosed_tellsWhetherRoundWasClosed() {
+        when(redisTemplate.hasKey("rounds:3:closed")).thenReturn(true);
+        when(redisTemplate.hasKey("rounds:4:closed")).thenReturn(false);
+
+        assertTrue(scoringService.isClosed(3L));
+        assertFalse(scoringService.isClosed(4L));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.trivia.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+/**
+ * Measures subscribe and unsubscribe churn on the connections of a room while
+ * events are published to it, with the concurrent key set that
+ * {@link SseService} keeps the connections of a topic in, against the
+ * copy-on-write set it replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class SseChurnBenchmark {
+
+    public enum Registry {
+        CONCURRENT_KEY_SET,
+        COPY_ON_WRITE
+    }
+
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> FRAME = Set.of(
+            new ResponseBodyEmitter.DataWithMediaType("event:ping\ndata:1\n\n".getBytes(StandardCharsets.UTF_8),
+                    MediaType.TEXT_EVENT_STREAM));
+
+    @Param
+    public Registry registry;
+
+    @Param({ "100", "1000" })
+    public int connections;
+
+    private Set<SseConnection> subscribers;
+
+    @Setup
+    public void setUp() {
+        subscribers = registry == Registry.CONCURRENT_KEY_SET
+                ? ConcurrentHashMap.newKeySet()
+                : new CopyOnWriteArraySet<>();
+        for (int i = 0; i < connections; i++) {
+            subscribers.add(newConnection());
+        }
+    }
+
+    private static SseConnection newConnection() {
+        return new SseConnection(new SseFanOutBenchmark.DiscardingEmitter(), 64,
+                SseConnection.SlowConsumerPolicy.DROP_OLDEST, Runnable::run);
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(3)
+    public boolean subscribeAndUnsubscribe() {
+        SseConnection connection = newConnection();
+        subscribers.add(connection);
+        return subscribers.remove(connection);
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public void publish() {
+        for (SseConnection subscriber : subscribers) {
+            subscriber.enqueue(FRAME);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.trivia.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SseConnectionTest {
+    // Sends on the thread that enqueues, so a drain runs to completion inside enqueue
+    private static final Executor DIRECT = Runnable::run;
+
+    @Mock
+    private SseEmitter emitter;
+
+    // Holds drains back until they are run, so events pile up in the queue
+    private final Queue<Runnable> heldDrains = new ArrayDeque<>();
+
+    private static Set<ResponseBodyEmitter.DataWithMediaType> frame(String data) {
+        return Set.of(new ResponseBodyEmitter.DataWithMediaType(data.getBytes(StandardCharsets.UTF_8),
+                MediaType.TEXT_EVENT_STREAM));
+    }
+
+    private void runHeldDrains() {
+        Runnable drain;
+        while ((drain = heldDrains.poll()) != null) {
+            drain.run();
+        }
+    }
+
+    @Test
+    void enqueue_sendsEventsInOrder() throws IOException {
+        SseConnection connection = new SseConnection(emitter, 4, SseConnection.SlowConsumerPolicy.DISCONNECT, DIRECT);
+        Set<ResponseBodyEmitter.DataWithMediaType> first = frame("1");
+        Set<ResponseBodyEmitter.DataWithMediaType> second = frame("2");
+
+        connection.enqueue(1, first);
+        connection.enqueue(2, second);
+
+        InOrder inOrder = inOrder(emitter);
+        inOrder.verify(emitter).send(first);
+        inOrder.verify(emitter).send(second);
+        assertFalse(connection.isEvicted());
+    }
+
+    @Test
+    void enqueue_disconnectsWhenQueueOverflows() throws IOException {
+        SseConnection connection = new SseConnection(emitter, 2, SseConnection.SlowConsumerPolicy.DISCONNECT,
+                heldDrains::add);
+
+        connection.enqueue(1, frame("1"));
+        connection.enqueue(2, frame("2"));
+        connection.enqueue(3, frame("3"));
+
+        assertTrue(connection.isEvicted());
+        verify(emitter).complete();
+
+        // The queue is cleared, so the drain scheduled before the overflow sends nothing
+        runHeldDrains();
+        verify(emitter, never()).send(anySet());
+    }
+
+    @Test
+    void enqueue_dropsOldestEventWhenQueueOverflows() throws IOException {
+        SseConnection connection = new SseConnection(emitter, 2, SseConnection.SlowConsumerPolicy.DROP_OLDEST,
+                heldDrains::add);
+        Set<ResponseBodyEmitter.DataWithMediaType> first = frame("1");
+        Set<ResponseBodyEmitter.DataWithMediaType> second = frame("2");
+        Set<ResponseBodyEmitter.DataWithMediaType> third = frame("3");
+
+        connection.enqueue(1, first);
+        connection.enqueue(2, second);
+        connection.enqueue(3, third);
+        runHeldDrains();
+
+        assertFalse(connection.isEvicted());
+        InOrder inOrder = inOrder(emitter);
+        inOrder.verify(emitter).send(second);
+        inOrder.verify(emitter).send(third);
+        verify(emitter, never()).send(first);
+        verify(emitter, never()).complete();
+    }
+
+    @Test
+    void finishReplay_sendsReplayedEventsBeforeLiveOnesWithoutDuplicates() throws IOException {
+        SseConnection connection = new SseConnection(emitter, 8, SseConnection.SlowConsumerPolicy.DISCONNECT, DIRECT);
+        Set<ResponseBodyEmitter.DataWithMediaType> replayed2 = frame("2");
+        Set<ResponseBodyEmitter.DataWithMediaType> replayed3 = frame("3");
+        Set<ResponseBodyEmitter.DataWithMediaType> live3 = frame("3 live");
+        Set<ResponseBodyEmitter.DataWithMediaType> live4 = frame("4");
+
+        connection.startReplay();
+        // Live events that arrive while the buffer is read, one of which is also in the buffer
+        connection.enqueue(3, live3);
+        connection.enqueue(4, live4);
+        verify(emitter, never()).send(anySet());
+
+        connection.replay(2, replayed2);
+        connection.replay(3, replayed3);
+        connection.finishReplay();
+
+        InOrder inOrder = inOrder(emitter);
+        inOrder.verify(emitter).send(replayed2);
+        inOrder.verify(emitter).send(replayed3);
+        inOrder.verify(emitter).send(live4);
+        verify(emitter, never()).send(live3);
+    }
+
+    @Test
+    void enqueue_skipsEventsThatAreNotNewerThanTheLastOne() throws IOException {
+        SseConnection connection = new SseConnection(emitter, 4, SseConnection.SlowConsumerPolicy.DISCONNECT, DIRECT);
+        Set<ResponseBodyEmitter.DataWithMediaType> ping = frame(":ping");
+
+        connection.enqueue(5, frame("5"));
+        connection.enqueue(5, frame("5 again"));
+        connection.enqueue(4, frame("4"));
+        connection.enqueue(ping);
+
+        verify(emitter, times(2)).send(anySet());
+        verify(emitter).send(ping);
+    }
+
+    @Test
+    void evictIfStalled_evictsConnectionWhoseSendsStalled() {
+        SseConnection connection = new SseConnection(emitter, 4, SseConnection.SlowConsumerPolicy.DISCONNECT,
+                heldDrains::add);
+        connection.enqueue(1, frame("1"));
+
+        assertFalse(connection.evictIfStalled(Long.MAX_VALUE));
+        assertTrue(connection.evictIfStalled(0));
+
+        assertTrue(connection.isEvicted());
+        verify(emitter).complete();
+        // Evicting again is a no-op
+        assertFalse(connection.evictIfStalled(0));
+    }
+
+    @Test
+    void evictIfStalled_keepsIdleConnection() {
+        SseConnection connection = new SseConnection(emitter, 4, SseConnection.SlowConsumerPolicy.DISCONNECT, DIRECT);
+
+        assertFalse(connection.evictIfStalled(0));
+        assertFalse(connection.isEvicted());
+        verifyNoInteractions(emitter);
+    }
+
+    @Test
+    void drain_completesEmitterWithErrorWhenSendFails() throws IOException {
+        SseConnection connection = new SseConnection(emitter, 4, SseConnection.SlowConsumerPolicy.DISCONNECT, DIRECT);
+        IOException failure = new IOException("Broken pipe");
+        doThrow(failure).when(emitter).send(anySet());
+
+        connection.enqueue(1, frame("1"));
+        connection.enqueue(2, frame("2"));
+
+        assertTrue(connection.isEvicted());
+        verify(emitter).completeWithError(failure);
+        verify(emitter, times(1)).send(anySet());
+        verify(emitter, never()).complete();
+    }
+
+    @Test
+    void enqueue_ignoresEventsAfterEviction() throws IOException {
+        SseConnection connection = new SseConnection(emitter, 1, SseConnection.SlowConsumerPolicy.DISCONNECT,
+                heldDrains::add);
+        connection.enqueue(1, frame("1"));
+        connection.enqueue(2, frame("2"));
+
+        connection.enqueue(3, frame("3"));
+        runHeldDrains();
+
+        verify(emitter, times(1)).complete();
+        verify(emitter, never()).send(anySet());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.trivia.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tools.jackson.databind.json.JsonMapper;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Measures the cost of delivering one event to every connection of a room,
+ * encoding the frame once for all of them as {@link SseService} does, against
+ * serializing and encoding it once per connection. Run with -prof gc to see
+ * the allocation per event.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SseFanOutBenchmark {
+
+    /**
+     * An emitter that discards what it is sent, so only the work before the
+     * socket is measured.
+     */
+    static class DiscardingEmitter extends SseEmitter {
+        @Override
+        public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) {
+        }
+    }
+
+    /**
+     * The data of a typical event.
+     */
+    public record Answered(long playerId, long questionId, long teamId) {
+    }
+
+    @Param({ "10", "100", "1000" })
+    public int connections;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final Answered data = new Answered(42, 7, 3);
+    private final List<SseConnection> subscribers = new ArrayList<>();
+    private long eventId;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < connections; i++) {
+            // Sends run on the publishing thread, so every benchmark call delivers the event completely
+            subscribers.add(new SseConnection(new DiscardingEmitter(), 64,
+                    SseConnection.SlowConsumerPolicy.DROP_OLDEST, Runnable::run));
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce() {
+        long id = ++eventId;
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = SseService.encode(id, "answer-submitted",
+                jsonMapper.writeValueAsString(data));
+        for (SseConnection subscriber : subscribers) {
+            subscriber.enqueue(id, frame);
+        }
+    }
+
+    @Benchmark
+    public void encodePerConnection() {
+        long id = ++eventId;
+        for (SseConnection subscriber : subscribers) {
+            String frame = "id:" + id + "\nevent:answer-submitted\ndata:" + jsonMapper.writeValueAsString(data)
+                    + "\n\n";
+            subscriber.enqueue(id, Set.of(new ResponseBodyEmitter.DataWithMediaType(
+                    frame.getBytes(StandardCharsets.UTF_8), MediaType.TEXT_EVENT_STREAM)));
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.trivia.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockedConstruction;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SseServiceTest {
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOps;
+
+    @Mock
+    private ListOperations<String, String> listOps;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private SseService sseService;
+
+    @BeforeEach
+    void setUp() {
+        // A queue of one event with the disconnect policy, and no heartbeat during the test
+        sseService = new SseService(JsonMapper.builder().build(), redisMessageListenerContainer, redisTemplate,
+                1, SseConnection.SlowConsumerPolicy.DISCONNECT, 1, 3600, 3600);
+        sseService.bindTo(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sseService.shutdown();
+    }
+
+    private static String buffered(long id) {
+        return id + "\nplayer-joined\n" + id;
+    }
+
+    /**
+     * Subscribes with a last event id, with the given id of the last event of
+     * the topic and buffered events, and returns the frames sent once the
+     * given number of frames has been sent.
+     */
+    private List<String> replay(long lastEventId, String lastPublishedId, List<String> buffer, int frameCount)
+            throws Exception {
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.get("sse:1:event-id")).thenReturn(lastPublishedId);
+        when(redisTemplate.opsForList()).thenReturn(listOps);
+        when(listOps.range("sse:1:events", 0, -1)).thenReturn(buffer);
+
+        List<String> frames = new ArrayList<>();
+        try (MockedConstruction<SseEmitter> emitters = mockConstruction(SseEmitter.class,
+                (emitter, context) -> doAnswer(invocation -> {
+                    Set<ResponseBodyEmitter.DataWithMediaType> frame = invocation.getArgument(0);
+                    for (ResponseBodyEmitter.DataWithMediaType data : frame) {
+                        synchronized (frames) {
+                            frames.add(new String((byte[]) data.getData(), StandardCharsets.UTF_8));
+                        }
+                    }
+                    return null;
+                }).when(emitter).send(anySet()))) {
+            sseService.subscribe("1", lastEventId);
+            verify(emitters.constructed().get(0), timeout(5000).times(frameCount)).send(anySet());
+        }
+        synchronized (frames) {
+            return List.copyOf(frames);
+        }
+    }
+
+    @Test
+    void subscribe_replaysBufferedEventsAfterLastEventId() throws Exception {
+        List<String> frames = replay(8, "10", List.of(buffered(8), buffered(9), buffered(10)), 3);
+
+        assertEquals(List.of(
+                "event:message\ndata:Connected\n\n",
+                "id:9\nevent:player-joined\ndata:9\n\n",
+                "id:10\nevent:player-joined\ndata:10\n\n"), frames);
+    }
+
+    @Test
+    void subscribe_sendsResyncWhenMissedEventsWereTrimmed() throws Exception {
+        List<String> frames = replay(5, "10", List.of(buffered(9), buffered(10)), 2);
+
+        assertEquals("id:10\nevent:resync\ndata:10\n\n", frames.get(1));
+    }
+
+    @Test
+    void subscribe_sendsResyncWhenBufferExpired() throws Exception {
+        List<String> frames = replay(8, "10", List.of(), 2);
+
+        assertEquals("id:10\nevent:resync\ndata:10\n\n", frames.get(1));
+    }
+
+    @Test
+    void subscribe_sendsResyncWhenIdsStartedOver() throws Exception {
+        // Redis lost its data since the last event of the client
+        List<String> frames = replay(50, "2", List.of(buffered(1), buffered(2)), 2);
+
+        assertEquals("id:2\nevent:resync\ndata:2\n\n", frames.get(1));
+    }
+
+    private static DefaultMessage message(long id) {
+        return new DefaultMessage("1".getBytes(StandardCharsets.UTF_8),
+                (id + "\nplayer-joined\n" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void bindTo_countsLiveConnections() {
+        assertEquals(0, meterRegistry.get("sse.connections.live").gauge().value());
+
+        sseService.subscribe("1", null);
+        sseService.subscribe("2", null);
+
+        assertEquals(2, meterRegistry.get("sse.connections.live").gauge().value());
+        assertEquals(2, sseService.getLiveConnectionCount());
+    }
+
+    @Test
+    void deliver_countsConnectionEvictedWhenQueueOverflows() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Every send blocks, so the events delivered after the first pile up in the queue
+        try (MockedConstruction<SseEmitter> emitters = mockConstruction(SseEmitter.class,
+                (emitter, context) -> doAnswer(invocation -> {
+                    sending.countDown();
+                    release.await();
+                    return null;
+                }).when(emitter).send(anySet()))) {
+            sseService.subscribe("1", null);
+            ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+            verify(redisMessageListenerContainer).addMessageListener(listener.capture(), any(ChannelTopic.class));
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+            // The connected event is being sent, so the first event fills the queue and the second overflows it
+            listener.getValue().onMessage(message(1), null);
+            listener.getValue().onMessage(message(2), null);
+
+            SseEmitter emitter = emitters.constructed().get(0);
+            verify(emitter).complete();
+            assertEquals(1, sseService.getEvictedConnectionCount());
+            assertEquals(1, meterRegistry.get("sse.connections.evicted").functionCounter().count());
+
+            // Later events are ignored rather than counted again
+            listener.getValue().onMessage(message(3), null);
+            assertEquals(1, sseService.getEvictedConnectionCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void publish_bumpsVersionOnceRedisIsBackAfterFailure() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("Redis unavailable"));
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+
+        // The change is committed, so the failure is not thrown to the caller
+        assertEquals(0, sseService.publish("1", "player-joined", 1L));
+
+        // The version is unknown until it is bumped, so no client is told its stale data is current
+        assertNull(sseService.getVersion("1"));
+        verify(valueOps, timeout(5000)).increment("sse:1:event-id");
+        when(valueOps.multiGet(List.of("sse:epoch", "sse:1:event-id"))).thenReturn(Arrays.asList("100", "8"));
+        assertEquals("100-8", sseService.getVersion("1"));
+    }
+
+    @Test
+    void getVersion_setsEpochOfNewDataset() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.multiGet(List.of("sse:epoch", "sse:1:event-id"))).thenReturn(Arrays.asList(null, null));
+        when(valueOps.get("sse:epoch")).thenReturn("200");
+
+        assertEquals("200-0", sseService.getVersion("1"));
+        verify(valueOps).setIfAbsent(eq("sse:epoch"), anyString());
+    }
+}